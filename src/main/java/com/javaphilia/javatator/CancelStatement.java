@@ -0,0 +1,77 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import com.aoapps.lang.io.ContentType;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet that cancels the statement running for another request, such as a long query.
+ *
+ * <p>Takes the same connection parameters as {@link Main}, which must be for the same user,
+ * password and database as the running statement, along with the <code>id</code> of the request to cancel.
+ * Responds with <code>{"canceled":true|false}</code>.</p>
+ *
+ * @see  RunningStatements
+ */
+@WebServlet("/cancel-statement")
+public class CancelStatement extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  public void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+    Settings settings = new Settings(getServletContext(), req);
+    String id = req.getParameter("id");
+    if (id == null || id.isEmpty()) {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "id required");
+      return;
+    }
+
+    boolean canceled;
+    try {
+      canceled = RunningStatements.cancel(id, settings);
+    } catch (SQLException e) {
+      throw new ServletException(e);
+    } finally {
+      try {
+        DatabasePool.releaseRequestConnections(req);
+      } catch (SQLException e) {
+        throw new ServletException(e);
+      }
+    }
+
+    resp.setContentType(ContentType.JSON);
+    resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    resp.setHeader("Cache-Control", "no-cache");
+    resp.getWriter().print("{\"canceled\":" + canceled + '}');
+  }
+}
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,6 +27,7 @@
 
 package com.javaphilia.javatator;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -45,8 +46,8 @@ public class CheckConstraints {
   private final List<String> checkClauses;
 
   public CheckConstraints(List<String> names, List<String> checkClauses) {
-    this.names = names;
-    this.checkClauses = checkClauses;
+    this.names = Collections.unmodifiableList(names);
+    this.checkClauses = Collections.unmodifiableList(checkClauses);
   }
 
   /**
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -28,6 +28,7 @@
 package com.javaphilia.javatator;
 
 import com.javaphilia.javatator.JdbcConnector.Boolean;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -94,28 +95,28 @@ public class Columns {
       List<String> defaults,
       List<String> remarks
   ) {
-    this.names = names;
+    this.names = Collections.unmodifiableList(names);
     size = names.size();
     if (types.size() != size) {
       throw new AssertionError();
     }
-    this.types = types;
+    this.types = Collections.unmodifiableList(types);
     if (lengths.size() != size) {
       throw new AssertionError();
     }
-    this.lengths = lengths;
+    this.lengths = Collections.unmodifiableList(lengths);
     if (areNullable.size() != size) {
       throw new AssertionError();
     }
-    this.areNullable = areNullable;
+    this.areNullable = Collections.unmodifiableList(areNullable);
     if (defaults.size() != size) {
       throw new AssertionError();
     }
-    this.defaults = defaults;
+    this.defaults = Collections.unmodifiableList(defaults);
     if (remarks.size() != size) {
       throw new AssertionError();
     }
-    this.remarks = remarks;
+    this.remarks = Collections.unmodifiableList(remarks);
   }
 
   /**
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -32,8 +32,14 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 import javax.servlet.http.HttpServletRequest;
 
 /**
@@ -86,6 +92,7 @@ public class Database {
 
   /**
    * Executes some user-specified SQL on the current database.
+   * Only the rows of the current page, plus one to know whether more follow, are read.
    */
   public Settings doSql(
       JavatatorWriter out,
@@ -94,7 +101,6 @@ public class Database {
       int numrows
   ) throws SQLException, IOException {
     final JdbcConnector conn = settings.getJdbcConnector();
-    boolean countRows = false;
 
     out.print("<h2>Database ");
     out.print(settings.getDatabase());
@@ -102,64 +108,180 @@ public class Database {
         + "Results of query: ");
     Util.printEscapedHtml(out, sql);
     out.print("<br><br>\n");
-    int totalRows = conn.countRecords();
-    printPreviousNext(out, startPos, numrows, totalRows, 1);
 
-    int numberOfRows;
+    // Plain selects may be wrapped to let the server skip the rows before the page
+    String wrapped = null;
+    String select = getWrappableSelect(sql);
+    if (select != null) {
+      String limitClause = conn.getLimitClause(startPos, numrows + 1);
+      if (limitClause != null) {
+        wrapped = "SELECT * FROM (" + select + ") javatator_sql " + limitClause;
+      }
+    }
+
+    List<String> columns = new ArrayList<>();
+    List<String[]> rows = new ArrayList<>();
+    boolean more;
+    RunningStatements.printCancel(out, settings);
+    try (Connection dbconn = DatabasePool.getConnection(settings)) {
+      if (wrapped == null) {
+        more = readRows(dbconn, sql, startPos, numrows, columns, rows);
+      } else {
+        try {
+          more = readRows(dbconn, wrapped, 0, numrows, columns, rows);
+        } catch (SQLException e) {
+          // Not every select is allowed as a subquery, such as with duplicate column names.
+          // Anything else, such as a timeout or cancel, or an error once the results were being
+          // read, would only be repeated by running the more expensive unwrapped query.
+          if (!columns.isEmpty() || !isWrappingError(e)) {
+            throw e;
+          }
+          columns.clear();
+          rows.clear();
+          more = readRows(dbconn, sql, startPos, numrows, columns, rows);
+        }
+      }
+    } finally {
+      RunningStatements.printCancelDone(out, settings);
+    }
 
+    printPreviousNext(out, startPos, numrows, more, 1);
     out.startTable(null, "cellspacing=1");
     try {
-      try (
-          Connection dbconn = DatabasePool.getConnection(settings);
-          Statement stmt = dbconn.createStatement();
-          ResultSet results = stmt.executeQuery(sql)
-          ) {
-        ResultSetMetaData resultMetaData = results.getMetaData();
-        int numberOfColumns = resultMetaData.getColumnCount();
-        out.startTr();
-        if (numberOfColumns > 0) {
-          for (int i = 1; i <= numberOfColumns; i++) {
-            String col = resultMetaData.getColumnName(i);
-            String order = "asc";
-            if (col.equals(settings.getSortColumn()) && "asc".equals(settings.getSortOrder())) {
-              order = "desc";
-            }
-            out.printTh("<A href=\"javascript:setSortColumn('" + col + "');"
-                + "setSortOrder('" + order + "');"
-                + "selectAction('dosql');"
-                + "\">"
-                + Util.escapeHtml(col)
-                + "</A>");
+      out.startTr();
+      if (!columns.isEmpty()) {
+        for (String col : columns) {
+          String order = "asc";
+          if (col.equals(settings.getSortColumn()) && "asc".equals(settings.getSortOrder())) {
+            order = "desc";
           }
-          out.printTh("Options");
-          out.endTr();
-          for (numberOfRows = 0; results.next(); numberOfRows++) {
-            if (countRows || (numberOfRows >= startPos && numberOfRows < startPos + numrows)) {
-              out.startTr();
-              for (int i = 1; i <= numberOfColumns; i++) {
-                String value = results.getString(i);
-                out.printTd(
-                    (value == null) ? ""
-                        : (value.length() == 0) ? "&nbsp;"
-                        : Util.escapeHtml(value));
-              }
-              out.endTr();
-            }
+          out.printTh("<A href=\"javascript:setSortColumn('" + col + "');"
+              + "setSortOrder('" + order + "');"
+              + "selectAction('dosql');"
+              + "\">"
+              + Util.escapeHtml(col)
+              + "</A>");
+        }
+        out.printTh("Options");
+        out.endTr();
+        for (String[] row : rows) {
+          out.startTr();
+          for (String value : row) {
+            out.printTd(
+                (value == null) ? ""
+                    : (value.length() == 0) ? "&nbsp;"
+                    : Util.escapeHtml(value));
           }
-        } else {
-          out.printTh("Query executed successfully. No data returned.");
           out.endTr();
         }
+      } else {
+        out.printTh("Query executed successfully. No data returned.");
+        out.endTr();
       }
     } finally {
       out.endTable();
     }
 
     out.print("<br><br>\n");
-    printPreviousNext(out, startPos, numrows, totalRows, 1);
+    printPreviousNext(out, startPos, numrows, more, 1);
     return settings;
   }
 
+  /**
+   * Checks if the wrapped select failed because of the wrapping itself: a syntax or semantic
+   * error (SQLState class <code>42</code>), and not a timeout or cancel.
+   */
+  private static boolean isWrappingError(SQLException e) {
+    String sqlState = e.getSQLState();
+    return !(e instanceof SQLTimeoutException)
+        && sqlState != null
+        && sqlState.startsWith("42");
+  }
+
+  /**
+   * Reads the column names and one page of rows of a query.
+   *
+   * @param  skipRows  the number of rows to skip before the page
+   *
+   * @return  {@code true} when more rows follow the page
+   */
+  private boolean readRows(
+      Connection dbconn,
+      String query,
+      int skipRows,
+      int numrows,
+      List<String> columns,
+      List<String[]> rows
+  ) throws SQLException, IOException {
+    try (Statement stmt = dbconn.createStatement()) {
+      // The driver need not send more than the rows read
+      stmt.setMaxRows((int) Math.min((long) skipRows + numrows + 1, Integer.MAX_VALUE));
+      stmt.setFetchSize(numrows + 1);
+      RunningStatements.Running running = RunningStatements.start(settings, dbconn, stmt);
+      try (ResultSet results = stmt.executeQuery(query)) {
+        ResultSetMetaData resultMetaData = results.getMetaData();
+        int numberOfColumns = resultMetaData.getColumnCount();
+        for (int i = 1; i <= numberOfColumns; i++) {
+          columns.add(resultMetaData.getColumnName(i));
+        }
+        if (numberOfColumns > 0) {
+          for (int skipped = 0; skipped < skipRows && results.next(); skipped++) {
+            // Skipping rows before the page
+          }
+          while (results.next()) {
+            if (rows.size() == numrows) {
+              return true;
+            }
+            String[] row = new String[numberOfColumns];
+            for (int i = 1; i <= numberOfColumns; i++) {
+              row[i - 1] = results.getString(i);
+            }
+            rows.add(row);
+          }
+        }
+        return false;
+      } finally {
+        running.end();
+      }
+    }
+  }
+
+  /**
+   * Finds the clauses of a select that may not be used in a subquery:
+   * <code>INTO</code>, <code>FOR UPDATE</code>, <code>FOR SHARE</code> and <code>LOCK IN SHARE MODE</code>.
+   */
+  private static final Pattern NOT_WRAPPABLE = Pattern.compile(
+      "\\b(into|for\\s+(no\\s+key\\s+)?update|for\\s+(key\\s+)?share|lock\\s+in\\s+share\\s+mode)\\b",
+      Pattern.CASE_INSENSITIVE
+  );
+
+  /**
+   * Gets a single select statement that may be used as a subquery, without its trailing semicolon.
+   *
+   * @return  the select or {@code null} when not a plain select or wrapping is disabled
+   */
+  private String getWrappableSelect(String sql) {
+    if (!Boolean.TRUE.equals(settings.getDatabaseConfiguration().getBooleanProperty("sql.wrap.limit", settings.getDatabaseProduct()))) {
+      return null;
+    }
+    String select = sql.trim();
+    while (select.endsWith(";")) {
+      select = select.substring(0, select.length() - 1).trim();
+    }
+    if (
+        select.length() < 7
+            || !select.regionMatches(true, 0, "select", 0, 6)
+            || !Character.isWhitespace(select.charAt(6))
+            // Multiple statements, or a semicolon within a string, are left alone
+            || select.indexOf(';') != -1
+            // Neither row locking nor creating a table is allowed in a subquery
+            || NOT_WRAPPABLE.matcher(select).find()
+    ) {
+      return null;
+    }
+    return select;
+  }
+
   /**
    * Drops the current database.
    */
@@ -198,6 +320,32 @@ public class Database {
 
       JdbcConnector conn = settings.getJdbcConnector();
       List<String> v = conn.getTables();
+      // Only count the tables without estimates or estimated small
+      DatabaseConfiguration databaseConfiguration = settings.getDatabaseConfiguration();
+      Map<String, Long> estimates = null;
+      if (Boolean.TRUE.equals(databaseConfiguration.getBooleanProperty("estimate.counts", settings.getDatabaseProduct()))) {
+        estimates = conn.getEstimatedRecordCounts();
+      }
+      if (estimates == null) {
+        estimates = Collections.emptyMap();
+      }
+      long exactBelow = databaseConfiguration.getLongProperty("estimate.exact.below", settings.getDatabaseProduct(), 10000);
+      List<String> countTables = new ArrayList<>();
+      for (String table : v) {
+        Long estimate = estimates.get(table);
+        if (estimate == null || estimate < exactBelow) {
+          countTables.add(table);
+        }
+      }
+      List<Integer> counts = TableTasks.forEachTable(
+          settings,
+          countTables,
+          tableSettings -> tableSettings.getJdbcConnector().countRecords()
+      );
+      Map<String, Integer> exactCounts = new HashMap<>(countTables.size() * 4 / 3 + 1);
+      for (int i = 0; i < countTables.size(); i++) {
+        exactCounts.put(countTables.get(i), counts.get(i));
+      }
       int size = v.size();
       for (int i = 0; i < size; i++) {
         String table = v.get(i);
@@ -229,7 +377,18 @@ public class Database {
         out.print("','table_privileges');\">Privileges</a>");
         out.endTd();
 
-        out.printTd(settings.setTable(table).getJdbcConnector().countRecords());
+        Integer count = exactCounts.get(table);
+        if (count != null) {
+          out.printTd(count);
+        } else {
+          out.startTd();
+          out.print("~");
+          out.print(estimates.get(table));
+          out.print(" <a href=\"javascript:selectTable('");
+          out.print(table);
+          out.print("','count_records');\">Count</a>");
+          out.endTd();
+        }
 
         out.endTr();
       }
@@ -278,7 +437,7 @@ public class Database {
     return settings;
   }
 
-  private void printPreviousNext(JavatatorWriter out, int startPos, int numrows, int totalRows, int which) {
+  private void printPreviousNext(JavatatorWriter out, int startPos, int numrows, boolean more, int which) {
     if (startPos > 0) {
       out.print("<b>Previous:</b> <input type='text' size=4 name='pnewnumrows");
       out.print(which);
@@ -296,8 +455,11 @@ public class Database {
           + " return selectAction('dosql')\">&nbsp;&nbsp;&nbsp;");
     }
 
-    // Only show the remaining if there are some that are not visible
-    int remaining = totalRows - startPos - numrows;
+    if (!more) {
+      out.print("No more rows.");
+      return;
+    }
+    // The total is not counted, only whether more rows follow
     out.print("<b>Next:</b> <input type='text' name='newnumrows");
     out.print(which);
     out.print("' size=4 value='");
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2018, 2019, 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2018, 2019, 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -130,6 +130,13 @@ public class DatabaseConfiguration {
     props = newProps;
   }
 
+  /**
+   * Uses the provided properties, such as in tests.
+   */
+  DatabaseConfiguration(Properties props) {
+    this.props = props;
+  }
+
   /**
    * Gets the list of hosts that may be accessed for the specified dbProduct.
    */
@@ -188,6 +195,50 @@ public class DatabaseConfiguration {
     return props.getProperty("db.*." + name);
   }
 
+  /**
+   * Gets all properties starting with the given prefix, using the database product string.
+   * Properties defined as <code>db.*.prefix.key</code> are overridden by any
+   * <code>db.databaseProduct.prefix.key</code>.  The prefix is removed from the returned keys.
+   *
+   * @param prefix the prefix of the properties to get, not including the trailing period.
+   * @param databaseProduct the name of the database product being used.
+   */
+  public Properties getProperties(String prefix, String databaseProduct) {
+    String globalPrefix = "db.*." + prefix + '.';
+    String productPrefix = "db." + databaseProduct + '.' + prefix + '.';
+    Properties global = new Properties();
+    Properties product = new Properties();
+    for (String name : props.stringPropertyNames()) {
+      if (name.startsWith(globalPrefix)) {
+        global.setProperty(name.substring(globalPrefix.length()), props.getProperty(name));
+      } else if (name.startsWith(productPrefix)) {
+        product.setProperty(name.substring(productPrefix.length()), props.getProperty(name));
+      }
+    }
+    global.putAll(product);
+    return global;
+  }
+
+  /**
+   * Gets a numeric property, using the default when it is not set, such as in a
+   * <code>database.properties</code> written before the property was added.
+   *
+   * @param name the name of the property to get.
+   * @param databaseProduct the name of the database product being used.
+   * @param defaultValue the value used when the property is missing or empty.
+   */
+  public long getLongProperty(String name, String databaseProduct, long defaultValue) {
+    String s = getProperty(name, databaseProduct);
+    return (s == null || s.isEmpty()) ? defaultValue : Long.parseLong(s.trim());
+  }
+
+  /**
+   * @see #getLongProperty(java.lang.String, java.lang.String, long)
+   */
+  public int getIntProperty(String name, String databaseProduct, int defaultValue) {
+    return Math.toIntExact(getLongProperty(name, databaseProduct, defaultValue));
+  }
+
   public Boolean getBooleanProperty(String name, String databaseProduct) {
     String s = getProperty(name, databaseProduct);
     if (s == null || s.isEmpty()) {
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2016, 2018, 2019, 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2016, 2018, 2019, 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -29,11 +29,35 @@ package com.javaphilia.javatator;
 
 import com.aoapps.sql.wrapper.ConnectionWrapperImpl;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * Database connection pool.
@@ -41,21 +65,89 @@ import java.util.List;
 public class DatabasePool {
 
   /**
-   * The maximum idle time for a connection.
+   * Stores all the active pools.  Idle connections within pools are closed, and pools unused
+   * for <code>pool.idle.timeout</code> are removed, by their periodic maintenance run by
+   * {@link DatabasePoolCleanup}.  When there are more than <code>maxpools</code>, the least
+   * recently used idle pools are removed as new pools are created.
    */
-  public static final long MAX_IDLE_TIME = 300000;
+  private static final ConcurrentMap<PoolKey, DatabasePool> pools = new ConcurrentHashMap<>();
 
   /**
-   * The delay between connection polls.
+   * The request attribute holding the connections leased for the life of the request.
    */
-  public static final long CLEANUP_POLL_DELAY = 180000;
+  private static final String REQUEST_LEASES_ATTRIBUTE = DatabasePool.class.getName() + ".requestLeases";
 
   /**
-   * Stores all the pools that have been created.  Pools are never deleted because that
-   * would remove their statistics from the overall results.  Idle connections within
-   * pools are closed by {@link DatabasePoolCleanup}.
+   * One circuit breaker per product, host and port, shared by all pools connecting there.
    */
-  private static final List<DatabasePool> pools = new ArrayList<>();
+  private static final ConcurrentMap<String, HostCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+  /**
+   * Limits the physical connections to each product, host and port across all pools.
+   */
+  private static final ConcurrentMap<String, Semaphore> hostLimits = new ConcurrentHashMap<>();
+
+  /**
+   * Identifies a pool by everything that determines its physical connections.  The password is
+   * only kept as a hash, so keys may be compared and logged without exposing it.
+   */
+  private static final class PoolKey {
+
+    private final String databaseProduct;
+    private final String hostname;
+    private final int port;
+    private final String username;
+    private final String database;
+    private final byte[] passwordHash;
+    private final int hash;
+
+    private PoolKey(
+        String databaseProduct,
+        String hostname,
+        int port,
+        String username,
+        String database,
+        String password
+    ) {
+      this.databaseProduct = databaseProduct;
+      this.hostname = hostname;
+      this.port = port;
+      this.username = username;
+      this.database = database;
+      try {
+        this.passwordHash = MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+      } catch (NoSuchAlgorithmException e) {
+        throw new AssertionError("SHA-256 is required by the Java platform", e);
+      }
+      this.hash = Objects.hash(databaseProduct, hostname, port, username, database) * 31 + Arrays.hashCode(passwordHash);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof PoolKey)) {
+        return false;
+      }
+      PoolKey other = (PoolKey) obj;
+      return
+          hash == other.hash
+              && port == other.port
+              && databaseProduct.equals(other.databaseProduct)
+              && hostname.equals(other.hostname)
+              && username.equals(other.username)
+              && database.equals(other.database)
+              && MessageDigest.isEqual(passwordHash, other.passwordHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private final PoolKey key;
 
   private final DatabaseConfiguration databaseConfiguration;
 
@@ -94,6 +186,23 @@ public class DatabasePool {
    */
   private final String url;
 
+  /**
+   * The properties passed to the driver, including any <code>connect.*</code> timeouts
+   * from the configuration.
+   */
+  private final Properties connectInfo;
+
+  /**
+   * Fails fast when connections to this pool's host have been failing.
+   */
+  private final HostCircuitBreaker breaker;
+
+  /**
+   * Limits the physical connections to this pool's host, shared with other pools to the
+   * same host, or <code>null</code> when unlimited.
+   */
+  private final Semaphore hostConnections;
+
   /**
    * The number of connections is taken from the properties file at construction time.
    */
@@ -137,19 +246,220 @@ public class DatabasePool {
    */
   private final long[] connectionUses;
 
-  private final Object connectLock = new Object();
+  /**
+   * The time of the last keepalive check of each connection.
+   */
+  private final long[] pingTimes;
 
-  // Only load the driver the first time
-  private boolean driverLoaded;
+  /**
+   * The ID the server knows each connection by, loaded on first use.
+   *
+   * @see  #getBackendId(java.sql.Connection, com.javaphilia.javatator.MetadataCache.Loader)
+   */
+  private final Object[] backendIds;
 
-  static {
-    DatabasePoolCleanup.startThread();
-  }
+  /**
+   * Set while connections are being opened in the background by {@link #refill(java.util.List)}.
+   */
+  private final AtomicBoolean refilling = new AtomicBoolean();
+
+  /**
+   * The time between maintenance runs, in milliseconds.
+   */
+  private final long maintenanceInterval;
+
+  /**
+   * Idle connections are closed after this many milliseconds.
+   */
+  private final long idleTimeout;
+
+  /**
+   * The number of connections kept open, even when idle.
+   */
+  private final int minIdle;
+
+  /**
+   * Idle connections are checked this often, in milliseconds, to keep them alive.
+   * Zero disables keepalive.
+   */
+  private final long keepaliveInterval;
+
+  /**
+   * The pool is removed once it has not been used for this many milliseconds.
+   */
+  private final long poolIdleTimeout;
+
+  /**
+   * The last time a connection was checked-out.
+   */
+  private volatile long lastUsed = System.currentTimeMillis();
+
+  /**
+   * Set once this pool has been removed.  Threads that find a closed pool try again with a new pool.
+   */
+  private volatile boolean closed;
+
+  private ScheduledFuture<?> maintenance;
+
+  /**
+   * The current lease of each checked-out slot.
+   */
+  private final AtomicReferenceArray<ReleaseOnCloseConnection> leases;
+
+  /**
+   * Idle connections are checked with {@link Connection#isValid(int)} before reuse once they
+   * have been idle this many milliseconds.  A negative value disables validation.
+   */
+  private final long validateIdle;
+
+  /**
+   * The timeout for {@link Connection#isValid(int)}, in seconds.
+   */
+  private final int validateTimeout;
+
+  /**
+   * Leases held longer than this many milliseconds are reported, along with the stack trace
+   * of the borrower.  Zero disables leak detection.
+   */
+  private final long leakThreshold;
+
+  /**
+   * When <code>true</code>, leases held longer than {@link #leakThreshold} are also reclaimed.
+   */
+  private final boolean leakReclaim;
+
+  /**
+   * Counts the number of connections discarded after a fatal error or failed validation.
+   */
+  private final LongAdder evictedCount = new LongAdder();
+
+  /**
+   * The number of idle prepared statements cached per connection.
+   */
+  private final int statementCacheSize;
+
+  /**
+   * Incremented when the schema changes, discarding the cached statements of every connection.
+   */
+  private final AtomicInteger statementGeneration = new AtomicInteger();
+
+  /**
+   * Counts the prepared statements reused from the cache.
+   */
+  private final LongAdder statementCacheHits = new LongAdder();
+
+  /**
+   * Counts the prepared statements not found in the cache.
+   */
+  private final LongAdder statementCacheMisses = new LongAdder();
+
+  /**
+   * The table metadata shared by all users of this pool.
+   */
+  private final MetadataCache metadataCache;
+
+  /**
+   * Limits the extra threads running {@link TableTasks} on this pool, <code>null</code> when disabled.
+   */
+  private final Semaphore parallelPermits;
+
+  /**
+   * The version of the database server, read from the first connection that needs it.
+   */
+  private volatile String databaseProductVersion;
+
+  /**
+   * Data about the capabilities of the database server, such as its types and functions,
+   * kept for the life of this pool.
+   */
+  private final ConcurrentMap<String, Object> capabilities = new ConcurrentHashMap<>();
+
+  /**
+   * Counts the number of leases reported as held too long.
+   */
+  private final LongAdder leakCount = new LongAdder();
+
+  /**
+   * The indexes of the slots not currently checked-out, used as a stack so the most recently
+   * released connection is reused first.  Connections that have been idle the longest
+   * collect at the tail, where {@link #cleanup0()} closes them.
+   */
+  private final Deque<Integer> idleSlots = new ConcurrentLinkedDeque<>();
+
+  /**
+   * The upper bounds, in milliseconds, of each bucket of {@link #getWaitHistogram()}.
+   * The final bucket holds all longer waits.
+   */
+  private static final long[] WAIT_HISTOGRAM_BOUNDS = {1, 10, 100, 1000, 10000};
+
+  /**
+   * The maximum time to wait for a connection, in milliseconds.
+   */
+  private final long checkoutTimeout;
+
+  /**
+   * Counts checkouts by how long they waited, bucketed by {@link #WAIT_HISTOGRAM_BOUNDS}.
+   */
+  private final AtomicLongArray waitHistogram = new AtomicLongArray(WAIT_HISTOGRAM_BOUNDS.length + 1);
+
+  /**
+   * The total time spent waiting for connections, in nanoseconds.
+   */
+  private final LongAdder totalWaitTime = new LongAdder();
+
+  /**
+   * Counts the number of checkouts that found every connection busy.
+   */
+  private final LongAdder exhaustedCount = new LongAdder();
+
+  /**
+   * Counts the number of checkouts that gave up after {@link #checkoutTimeout}.
+   */
+  private final LongAdder timeoutCount = new LongAdder();
+
+  /**
+   * The slots taken out of use while the pool is smaller than {@link #numConnections}.
+   * Synchronized on itself, along with changes to {@link #activeSlots}.
+   */
+  private final Deque<Integer> parkedSlots = new ArrayDeque<>();
+
+  /**
+   * The pool never shrinks below this many slots.
+   */
+  private final int minConnections;
+
+  /**
+   * The number of slots in use, between {@link #minConnections} and {@link #numConnections}.
+   * Grows when a checkout finds every slot busy and shrinks when most slots go unused.
+   */
+  private volatile int activeSlots;
+
+  /**
+   * The number of connections currently checked-out.
+   */
+  private final AtomicInteger leasedCount = new AtomicInteger();
+
+  /**
+   * The most connections checked-out at once since the last maintenance.
+   */
+  private final AtomicInteger peakLeased = new AtomicInteger();
+
+  /**
+   * One permit per slot in {@link #idleSlots}.  A permit is always acquired before a slot is
+   * taken from the stack and released only after the slot is pushed back, so a thread
+   * holding a permit is guaranteed to find a slot.  Fair, so waiting threads are served in
+   * the order they arrived.
+   */
+  private final Semaphore availableSlots;
+
+  // Only load the driver the first time
+  private volatile boolean driverLoaded;
 
   /**
    * The constructor is used internally only.
    */
   private DatabasePool(
+      PoolKey key,
       DatabaseConfiguration databaseConfiguration,
       String databaseProduct,
       String hostname,
@@ -159,6 +469,7 @@ public class DatabasePool {
       String database,
       String url
   ) throws IOException {
+    this.key = key;
     this.databaseConfiguration = databaseConfiguration;
     this.databaseProduct = databaseProduct;
     this.hostname = hostname;
@@ -167,7 +478,25 @@ public class DatabasePool {
     this.password = password;
     this.database = database;
     this.url = url;
-    numConnections = Integer.parseInt(databaseConfiguration.getProperty("connections", databaseProduct));
+    connectInfo = databaseConfiguration.getProperties("connect", databaseProduct);
+    connectInfo.setProperty("user", username);
+    connectInfo.setProperty("password", password);
+    breaker = breakers.computeIfAbsent(
+        databaseProduct + "://" + hostname + ':' + port,
+        host -> new HostCircuitBreaker(
+            host,
+            databaseConfiguration.getIntProperty("breaker.failures", databaseProduct, 5),
+            databaseConfiguration.getLongProperty("breaker.window", databaseProduct, 60000),
+            databaseConfiguration.getLongProperty("breaker.opentime", databaseProduct, 30000)
+        )
+    );
+    int hostLimit = databaseConfiguration.getIntProperty("host.connections", databaseProduct, 64);
+    hostConnections = hostLimit <= 0 ? null : hostLimits.computeIfAbsent(
+        databaseProduct + "://" + hostname + ':' + port,
+        host -> new Semaphore(hostLimit, true)
+    );
+    numConnections = databaseConfiguration.getIntProperty("connections", databaseProduct, 32);
+    checkoutTimeout = databaseConfiguration.getLongProperty("checkout.timeout", databaseProduct, 30000);
     connections = new Connection[numConnections];
     busyConnections = new boolean[numConnections];
     totalTimes = new long[numConnections];
@@ -175,237 +504,1249 @@ public class DatabasePool {
     releaseTimes = new long[numConnections];
     connectCount = new long[numConnections];
     connectionUses = new long[numConnections];
-  }
-
-  public static void cleanup() throws SQLException {
-    synchronized (pools) {
-      int size = pools.size();
-      for (int c = 0; c < size; c++) {
-        pools.get(c).cleanup0();
+    pingTimes = new long[numConnections];
+    backendIds = new Object[numConnections];
+    leases = new AtomicReferenceArray<>(numConnections);
+    maintenanceInterval = databaseConfiguration.getLongProperty("maintenance.interval", databaseProduct, 60000);
+    idleTimeout = databaseConfiguration.getLongProperty("idle.timeout", databaseProduct, 300000);
+    minIdle = Math.min(databaseConfiguration.getIntProperty("minidle", databaseProduct, 0), numConnections);
+    keepaliveInterval = databaseConfiguration.getLongProperty("keepalive.interval", databaseProduct, 0);
+    poolIdleTimeout = databaseConfiguration.getLongProperty("pool.idle.timeout", databaseProduct, 3600000);
+    validateIdle = databaseConfiguration.getLongProperty("validate.idle", databaseProduct, 30000);
+    validateTimeout = databaseConfiguration.getIntProperty("validate.timeout", databaseProduct, 5);
+    statementCacheSize = databaseConfiguration.getIntProperty("statement.cache", databaseProduct, 32);
+    metadataCache = new MetadataCache(databaseConfiguration.getLongProperty("metadata.ttl", databaseProduct, 60000));
+    int parallel = databaseConfiguration.getIntProperty("parallel", databaseProduct, 4);
+    parallelPermits = parallel > 0 ? new Semaphore(parallel) : null;
+    leakThreshold = databaseConfiguration.getLongProperty("leak.threshold", databaseProduct, 300000);
+    leakReclaim = Boolean.TRUE.equals(databaseConfiguration.getBooleanProperty("leak.reclaim", databaseProduct));
+    minConnections = Math.max(Math.min(databaseConfiguration.getIntProperty("connections.min", databaseProduct, 4), numConnections), 1);
+    activeSlots = Math.max(minConnections, minIdle);
+    for (int c = 0; c < numConnections; c++) {
+      if (c < activeSlots) {
+        idleSlots.addLast(c);
+      } else {
+        parkedSlots.addLast(c);
       }
     }
+    availableSlots = new Semaphore(activeSlots, true);
   }
 
-  private void cleanup0() throws SQLException {
-    long time = System.currentTimeMillis();
-    int size = connections.length;
-    synchronized (connectLock) {
-      for (int c = 0; c < size; c++) {
-        if (
-            connections[c] != null
-                && !busyConnections[c]
-                && (time - releaseTimes[c]) >= MAX_IDLE_TIME
-        ) {
-          connections[c].close();
-          connections[c] = null;
-        }
-      }
+  /**
+   * Creates a pool that is not added to the active pools and has no maintenance, such as in tests.
+   */
+  static DatabasePool newUnregisteredPool(
+      DatabaseConfiguration databaseConfiguration,
+      String databaseProduct,
+      String hostname,
+      int port,
+      String username,
+      String password,
+      String database,
+      String url
+  ) throws IOException {
+    return new DatabasePool(
+        new PoolKey(databaseProduct, hostname, port, username, database, password),
+        databaseConfiguration,
+        databaseProduct,
+        hostname,
+        port,
+        username,
+        password,
+        database,
+        url
+    );
+  }
+
+  /**
+   * Gets a snapshot of all the pools that have been created.
+   */
+  public static List<DatabasePool> getPools() {
+    return new ArrayList<>(pools.values());
+  }
+
+  /**
+   * Closes all pools, including any connections still checked-out.
+   */
+  public static void closeAll() {
+    for (DatabasePool pool : pools.values()) {
+      pools.remove(pool.key, pool);
+      pool.close(true);
     }
   }
 
-  public static void closeDatabase(Settings settings) throws SQLException {
-    synchronized (pools) {
-      int size = pools.size();
-      for (int c = 0; c < size; c++) {
-        DatabasePool temp = pools.get(c);
-        if (
-            temp.database.equals(settings.getDatabase())
-                && temp.hostname.equals(settings.getHostname())
-                && temp.port == settings.getPort()
-                && temp.databaseProduct.equals(settings.getDatabaseProduct())
-        ) {
-          while (!temp.closeDatabase0()) {
-            // Try until closed
-          }
-          // break;
+  /**
+   * Closes the least recently used pools with no connections checked-out until no more than
+   * <code>maxPools</code> remain.  Pools in use are never closed, so the limit may be exceeded
+   * while they are busy.
+   *
+   * @param keep  the pool just created, which is never closed
+   */
+  private static void evictLeastRecentlyUsed(int maxPools, DatabasePool keep) {
+    if (pools.size() > maxPools) {
+      List<DatabasePool> byLastUsed = getPools();
+      byLastUsed.sort(Comparator.comparingLong(pool -> pool.lastUsed));
+      int excess = byLastUsed.size() - maxPools;
+      for (DatabasePool pool : byLastUsed) {
+        if (excess <= 0) {
+          break;
+        }
+        if (pool != keep && pool.close(false)) {
+          excess--;
         }
       }
     }
   }
 
-  private boolean closeDatabase0() throws SQLException {
-    long time = System.currentTimeMillis();
-    boolean isSuccess = true;
-    int size = connections.length;
-    synchronized (connectLock) {
-      for (int c = 0; c < size; c++) {
-        if (connections[c] != null) {
-          if (
-              !busyConnections[c]
-                  || (busyConnections[c] && (time - releaseTimes[c]) >= MAX_IDLE_TIME)
-          ) {
-            connections[c].close();
-            connections[c] = null;
-            busyConnections[c] = false;
-            System.out.println("a connection was killed successfully");
-          } else {
-            isSuccess = false;
-          }
-        }
+  private void startMaintenance() {
+    synchronized (this) {
+      if (!closed) {
+        maintenance = DatabasePoolCleanup.schedule(this::maintain, maintenanceInterval);
       }
     }
-    return isSuccess;
   }
 
   /**
-   * Locates or creates the proper {@link DatabasePool} for a {@link Settings} and
-   * retrieves a {@link Connection} from it.
+   * Closes this pool and removes it from the active pools.
+   *
+   * @param force  when <code>true</code>, connections still checked-out are reclaimed, otherwise
+   *               the pool is only closed when all connections are idle
+   *
+   * @return  <code>true</code> when closed
    */
-  public static Connection getConnection(Settings settings) throws SQLException, IOException {
-    // TODO: Could use ao-net-types for more validation here
-    String databaseProduct = settings.getDatabaseProduct();
-    if (databaseProduct == null || (databaseProduct = databaseProduct.trim()).length() == 0) {
-      throw new SQLException("databaseProduct not set");
-    }
-    String hostname = settings.getHostname();
-    if (hostname == null || (hostname = hostname.trim()).length() == 0) {
-      throw new SQLException("hostname not set");
-    }
-    int port = settings.getPort();
-    if (port < 1 || port > 65535) {
-      throw new SQLException("Invalid port: " + port);
-    }
-    String username = settings.getUsername();
-    if (username == null || (username = username.trim()).length() == 0) {
-      throw new SQLException("username not set");
-    }
-    String password = settings.getPassword();
-    if (password == null) {
-      password = "";
-    }
-    String database = settings.getDatabase();
-    if (database == null || (database = database.trim()).length() == 0) {
-      throw new SQLException("database not set");
-    }
-
-    // Look for an existing pool
-    DatabasePool pool = null;
-    synchronized (pools) {
-      int size = pools.size();
-      for (int c = 0; c < size; c++) {
-        DatabasePool temp = pools.get(c);
-        if (
-            databaseProduct.equals(temp.databaseProduct)
-                && hostname.equals(temp.hostname)
-                && port == temp.port
-                && username.equals(temp.username)
-                && password.equals(temp.password)
-                && database.equals(temp.database)
-        ) {
-          pool = temp;
-          break;
+  boolean close(boolean force) {
+    int idle = availableSlots.drainPermits();
+    try {
+      if (!force && idle < activeSlots) {
+        return false;
+      }
+      synchronized (this) {
+        closed = true;
+        if (maintenance != null) {
+          maintenance.cancel(false);
+          maintenance = null;
         }
       }
-
-      // Create if not found
-      if (pool == null) {
-        pool = new DatabasePool(
-            settings.getDatabaseConfiguration(),
-            databaseProduct,
-            hostname,
-            port,
-            username,
-            password,
-            database,
-            settings.getUrl()
-        );
-        pools.add(pool);
+      pools.remove(key, this);
+      for (int c = 0; c < numConnections; c++) {
+        ReleaseOnCloseConnection lease = leases.get(c);
+        if (lease != null) {
+          lease.reclaim();
+        }
       }
+      // Idle connections, their slots are held by the drained permits
+      for (Integer slot : idleSlots) {
+        Connection conn = connections[slot];
+        if (conn != null && leases.get(slot) == null) {
+          connections[slot] = null;
+          disconnect(conn);
+        }
+      }
+      return true;
+    } finally {
+      // Wake any waiting threads, which will find the pool closed and try again
+      availableSlots.release(idle);
     }
-
-    // Get an available connection from the pool
-    return pool.getConnection0();
   }
 
   /**
-   * Calls {@link #releaseConnection0(java.sql.Connection)} when this
-   * connection is closed.
-   *
-   * <p>TODO: A future improvement would be to close a connection that has
-   * experienced a fatal SQLException, or refactor to use a different
-   * and more standard connection pooling implementation.</p>
+   * Periodic maintenance: closes connections idle longer than {@link #idleTimeout} beyond
+   * {@link #minIdle}, checks connections idle longer than {@link #keepaliveInterval}, opens
+   * connections up to {@link #minIdle} in the background, drops expired metadata, reports leaked
+   * connections, and removes this pool once unused for {@link #poolIdleTimeout}.
    */
-  // TODO: Extend NoCloseConnectionWrapper instead
-  private class ReleaseOnCloseConnection extends ConnectionWrapperImpl {
-
-    private ReleaseOnCloseConnection(Connection conn) {
-      super(conn);
+  private void maintain() {
+    long time = System.currentTimeMillis();
+    if (
+        (time - lastUsed) >= poolIdleTimeout
+            && getBusyCount() == 0
+            && close(false)
+    ) {
+      return;
     }
-
-    /**
-     * Calls {@link #releaseConnection0(java.sql.Connection)}, the connection
-     * itself is not closed.
-     */
-    @Override
-    public void close() throws SQLException {
-      releaseConnection0(getWrapped());
+    int open = 0;
+    for (int c = 0; c < numConnections; c++) {
+      if (connections[c] != null) {
+        open++;
+      }
+    }
+    // Examine the least recently used slots from the tail of the stack, stopping at the
+    // first one that needs nothing done.  Each examined slot is held by acquiring a
+    // permit, so it cannot be checked-out concurrently.
+    List<Integer> heldOpen = new ArrayList<>();
+    List<Integer> heldEmpty = new ArrayList<>();
+    try {
+      while (availableSlots.tryAcquire()) {
+        Integer slot = idleSlots.pollLast();
+        Connection conn = connections[slot];
+        if (conn == null) {
+          heldEmpty.add(slot);
+        } else if (open > minIdle && (time - releaseTimes[slot]) >= idleTimeout) {
+          connections[slot] = null;
+          disconnect(conn);
+          open--;
+          heldEmpty.add(slot);
+        } else if (keepaliveInterval > 0 && (time - Math.max(releaseTimes[slot], pingTimes[slot])) >= keepaliveInterval) {
+          boolean valid;
+          try {
+            valid = conn.isValid(validateTimeout);
+          } catch (SQLException e) {
+            valid = false;
+          }
+          pingTimes[slot] = time;
+          if (valid) {
+            heldOpen.add(slot);
+          } else {
+            evictedCount.increment();
+            connections[slot] = null;
+            disconnect(conn);
+            open--;
+            heldEmpty.add(slot);
+          }
+        } else {
+          // Nothing more to do
+          idleSlots.addLast(slot);
+          availableSlots.release();
+          break;
+        }
+      }
+      // Refill up to the minimum in the background, holding the empty slots while connecting
+      int refill = Math.min(heldEmpty.size(), minIdle - open);
+      if (refill > 0 && refilling.compareAndSet(false, true)) {
+        List<Integer> refillSlots = new ArrayList<>(heldEmpty.subList(0, refill));
+        if (DatabasePoolCleanup.execute(() -> refill(refillSlots))) {
+          heldEmpty.subList(0, refill).clear();
+        } else {
+          refilling.set(false);
+        }
+      }
+    } finally {
+      // Return the held slots to the tail, empty slots last so open connections are used first
+      for (Integer slot : heldOpen) {
+        idleSlots.addLast(slot);
+      }
+      for (Integer slot : heldEmpty) {
+        idleSlots.addLast(slot);
+      }
+      availableSlots.release(heldOpen.size() + heldEmpty.size());
     }
+    resize();
+    metadataCache.purgeExpired();
+    detectLeaks(time, leakReclaim);
   }
 
   /**
-   * Gets a connection to the database.  Multiple {@link Connection connections} to the database
-   * may exist at any moment. It checks the {@link Connection} pool for a not busy
-   * {@link Connection} sequentially. If found, it returns that {@link Connection}
-   * object, otherwise creates a new {@link Connection connection}, adds it to the pool and also
-   * returns the {@link Connection} object.  If all the connections in the pool are
-   * busy, it waits till a connection becomes available.
+   * Opens connections in empty slots held by {@link #maintain()}, then returns the slots.
    */
-  private ReleaseOnCloseConnection getConnection0() throws SQLException, IOException {
-    synchronized (connectLock) {
-      while (true) {
-        if (Thread.currentThread().isInterrupted()) {
-          throw new SQLException(new InterruptedException());
+  private void refill(List<Integer> slots) {
+    try {
+      for (Integer slot : slots) {
+        try {
+          connections[slot] = connect();
+          backendIds[slot] = null;
+        } catch (SQLException e) {
+          e.printStackTrace();
+          break;
         }
-        for (int c = 0; c < numConnections; c++) {
-          if (!busyConnections[c]) {
-            startTimes[c] = System.currentTimeMillis();
-            Connection conn = connections[c];
-            if (conn == null || conn.isClosed()) {
-              if (!driverLoaded) {
-                try {
-                  Class.forName(databaseConfiguration.getProperty("driver", databaseProduct));
-                  driverLoaded = true;
-                } catch (ClassNotFoundException err) {
-                  throw new SQLException(err);
-                }
-              }
-              conn = connections[c] = DriverManager.getConnection(
-                  url,
-                  username,
-                  password
-              );
-              connectCount[c]++;
+        connectCount[slot]++;
+        releaseTimes[slot] = System.currentTimeMillis();
+      }
+    } finally {
+      synchronized (this) {
+        if (closed) {
+          // Closed while connecting, the slots were not seen by close
+          for (Integer slot : slots) {
+            Connection conn = connections[slot];
+            if (conn != null) {
+              connections[slot] = null;
+              disconnect(conn);
             }
-            busyConnections[c] = true;
-            releaseTimes[c] = 0;
-            connectionUses[c]++;
-            return new ReleaseOnCloseConnection(conn);
           }
         }
-        try {
-          connectLock.wait();
-        } catch (InterruptedException err) {
-          // Restore the interrupted status
-          Thread.currentThread().interrupt();
-          throw new SQLException(err);
+        // Open connections first, at the tail as least recently used
+        for (Integer slot : slots) {
+          if (connections[slot] != null) {
+            idleSlots.addLast(slot);
+          }
+        }
+        for (Integer slot : slots) {
+          if (connections[slot] == null) {
+            idleSlots.addLast(slot);
+          }
+        }
+        availableSlots.release(slots.size());
+      }
+      refilling.set(false);
+    }
+  }
+
+  /**
+   * Puts a parked slot back in use when a checkout finds every slot busy, so the pool grows
+   * as soon as it is needed instead of at the next maintenance.
+   */
+  private void unparkSlot() {
+    Integer slot;
+    synchronized (parkedSlots) {
+      slot = parkedSlots.pollFirst();
+      if (slot == null) {
+        return;
+      }
+      activeSlots++;
+    }
+    idleSlots.addLast(slot);
+    availableSlots.release();
+  }
+
+  /**
+   * Gives back up to a quarter of the slots in use when fewer than half have been used at once
+   * since the last maintenance.  Growing is done by {@link #unparkSlot()} on checkout.
+   */
+  private void resize() {
+    int peak = peakLeased.getAndSet(leasedCount.get());
+    int active = activeSlots;
+    if (peak < active / 2) {
+      int target = Math.max(Math.max(minConnections, minIdle), peak * 2);
+      int shrink = Math.min(active - target, Math.max(active / 4, 1));
+      for (int i = 0; i < shrink && availableSlots.tryAcquire(); i++) {
+        Integer slot = idleSlots.pollLast();
+        Connection conn = connections[slot];
+        if (conn != null) {
+          connections[slot] = null;
+          disconnect(conn);
+        }
+        synchronized (parkedSlots) {
+          parkedSlots.addFirst(slot);
+          activeSlots--;
         }
       }
     }
   }
 
-  private boolean releaseConnection0(Connection conn) {
-    synchronized (connectLock) {
+  /**
+   * Reports leases held longer than {@link #leakThreshold}, optionally reclaiming them.
+   * Each lease is only reported once.
+   *
+   * @return  <code>true</code> when no leases remain that were held too long
+   */
+  private boolean detectLeaks(long time, boolean reclaim) {
+    boolean allReclaimed = true;
+    if (leakThreshold > 0) {
       for (int c = 0; c < numConnections; c++) {
-        if (conn == connections[c]) {
-          busyConnections[c] = false;
-          long time = System.currentTimeMillis();
-          releaseTimes[c] = time;
-          totalTimes[c] += time - startTimes[c];
-          connectLock.notify(); // notifyAll() not needed: only one connection released, so only one thread can get a connection
+        ReleaseOnCloseConnection lease = leases.get(c);
+        if (lease != null && (time - lease.startTime) >= leakThreshold) {
+          if (!lease.reported) {
+            lease.reported = true;
+            leakCount.increment();
+            new Throwable(
+                "Connection to " + databaseProduct + "://" + hostname + ':' + port + '/' + database
+                    + " held for " + (time - lease.startTime) + " ms by " + lease.borrower,
+                lease.borrowerStackTrace
+            ).printStackTrace();
+          }
+          if (reclaim) {
+            lease.reclaim();
+          } else {
+            allReclaimed = false;
+          }
+        }
+      }
+    }
+    return allReclaimed;
+  }
+
+  public static void closeDatabase(Settings settings) throws SQLException {
+    // The current request's own leases would otherwise never be returned
+    HttpServletRequest request = settings.getRequest();
+    if (request != null) {
+      releaseRequestConnections(request);
+    }
+    long timeout = settings.getDatabaseConfiguration().getLongProperty("close.timeout", settings.getDatabaseProduct(), 0);
+    for (DatabasePool temp : pools.values()) {
+      if (
+          temp.database.equals(settings.getDatabase())
+              && temp.hostname.equals(settings.getHostname())
+              && temp.port == settings.getPort()
+              && temp.databaseProduct.equals(settings.getDatabaseProduct())
+      ) {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!temp.closeDatabase0(System.currentTimeMillis() >= deadline)) {
+          // Try until closed, taking the remaining connections back once the timeout has passed
+          try {
+            Thread.sleep(100);
+          } catch (InterruptedException err) {
+            // Restore the interrupted status
+            Thread.currentThread().interrupt();
+            throw new SQLException(err);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Closes the idle connections and reclaims the leases held beyond the leak threshold.
+   *
+   * @param  force  reclaims all leases, even those within the leak threshold
+   *
+   * @return  {@code true} when no leases remain
+   */
+  private boolean closeDatabase0(boolean force) throws SQLException {
+    long time = System.currentTimeMillis();
+    boolean isSuccess = true;
+    int size = connections.length;
+    // Close every idle connection, holding each slot by its permit while closing
+    int idle = availableSlots.drainPermits();
+    List<Integer> held = new ArrayList<>(idle);
+    try {
+      for (int i = 0; i < idle; i++) {
+        Integer slot = idleSlots.removeFirst();
+        held.add(slot);
+        Connection conn = connections[slot];
+        if (conn != null) {
+          connections[slot] = null;
+          disconnect(conn);
+        }
+      }
+    } finally {
+      for (Integer slot : held) {
+        idleSlots.addLast(slot);
+      }
+      availableSlots.release(idle);
+    }
+    // Reclaim leases held beyond the leak threshold, wait for the rest to be returned
+    for (int c = 0; c < size; c++) {
+      ReleaseOnCloseConnection lease = leases.get(c);
+      if (lease != null) {
+        if (force) {
+          // Reported like a leak, with where it was checked-out when known
+          new Throwable(
+              "Reclaiming connection to " + databaseProduct + "://" + hostname + ':' + port + '/' + database
+                  + " held for " + (time - lease.startTime) + " ms by " + lease.borrower + " to close the database",
+              lease.borrowerStackTrace
+          ).printStackTrace();
+          lease.reclaim();
+        } else if (leakThreshold <= 0 || (time - lease.startTime) < leakThreshold) {
+          isSuccess = false;
+        }
+      }
+    }
+    if (!detectLeaks(time, true)) {
+      isSuccess = false;
+    }
+    return isSuccess;
+  }
+
+  /**
+   * Locates or creates the proper {@link DatabasePool} for a {@link Settings} and
+   * retrieves a {@link Connection} from it.
+   *
+   * <p>When the settings are for a request, the connection is leased once per pool and
+   * shared by every call during the request.  Closing the returned connection then has no
+   * effect, the lease is returned by {@link #releaseRequestConnections(javax.servlet.http.HttpServletRequest)}
+   * at the end of the request.</p>
+   */
+  public static Connection getConnection(Settings settings) throws SQLException, IOException {
+    PoolKey key = getKey(settings);
+    HttpServletRequest request = settings.getRequest();
+    if (request == null) {
+      return getConnection(settings, key);
+    }
+    @SuppressWarnings("unchecked")
+    Map<PoolKey, ReleaseOnCloseConnection> requestLeases = (Map<PoolKey, ReleaseOnCloseConnection>) request.getAttribute(REQUEST_LEASES_ATTRIBUTE);
+    if (requestLeases == null) {
+      requestLeases = new HashMap<>();
+      request.setAttribute(REQUEST_LEASES_ATTRIBUTE, requestLeases);
+    }
+    ReleaseOnCloseConnection lease = requestLeases.get(key);
+    if (lease != null && (lease.released.get() || lease.broken.get())) {
+      // Reclaimed or failed, replace with a new lease
+      requestLeases.remove(key);
+      lease.close();
+      lease = null;
+    }
+    if (lease == null) {
+      lease = getConnection(settings, key);
+      requestLeases.put(key, lease);
+    }
+    return new RequestConnection(lease);
+  }
+
+  /**
+   * Gets the ID the server knows the physical connection by, such as its process ID, loaded
+   * once per physical connection.  Connections not from a pool are loaded every time.
+   *
+   * @param  conn  a connection from {@link #getConnection(Settings)}
+   */
+  static Object getBackendId(Connection conn, MetadataCache.Loader<?> loader) throws SQLException, IOException {
+    ReleaseOnCloseConnection lease;
+    if (conn instanceof RequestConnection) {
+      lease = ((RequestConnection) conn).lease;
+    } else if (conn instanceof ReleaseOnCloseConnection) {
+      lease = (ReleaseOnCloseConnection) conn;
+    } else {
+      return loader.load();
+    }
+    return lease.getBackendId(loader);
+  }
+
+  /**
+   * Returns all the connections leased for a request.  Called at the end of the request.
+   */
+  public static void releaseRequestConnections(HttpServletRequest request) throws SQLException {
+    @SuppressWarnings("unchecked")
+    Map<PoolKey, ReleaseOnCloseConnection> requestLeases = (Map<PoolKey, ReleaseOnCloseConnection>) request.getAttribute(REQUEST_LEASES_ATTRIBUTE);
+    if (requestLeases != null) {
+      request.removeAttribute(REQUEST_LEASES_ATTRIBUTE);
+      for (ReleaseOnCloseConnection lease : requestLeases.values()) {
+        lease.close();
+      }
+    }
+  }
+
+  /**
+   * Gets the cache of table metadata shared by all users of the same pool.
+   */
+  static MetadataCache getMetadataCache(Settings settings) throws SQLException, IOException {
+    return getPool(settings, getKey(settings)).metadataCache;
+  }
+
+  /**
+   * Gets the permits for extra threads running {@link TableTasks} on the pool.
+   *
+   * @return  the permits or <code>null</code> when parallel tasks are disabled
+   */
+  static Semaphore getParallelPermits(Settings settings) throws SQLException, IOException {
+    return getPool(settings, getKey(settings)).parallelPermits;
+  }
+
+  /**
+   * Gets the version of the database server, read once per pool.
+   */
+  static String getDatabaseProductVersion(Settings settings) throws SQLException, IOException {
+    DatabasePool pool = getPool(settings, getKey(settings));
+    String version = pool.databaseProductVersion;
+    if (version == null) {
+      try (Connection conn = getConnection(settings)) {
+        version = conn.getMetaData().getDatabaseProductVersion();
+      }
+      pool.databaseProductVersion = version;
+    }
+    return version;
+  }
+
+  /**
+   * Gets data about the capabilities of the database server, loading it once per pool.
+   * Concurrent first requests may each load it, keeping the first.
+   *
+   * @param kind  the kind of data, such as <code>"types"</code>
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T getCapability(Settings settings, String kind, MetadataCache.Loader<T> loader) throws SQLException, IOException {
+    ConcurrentMap<String, Object> capabilities = getPool(settings, getKey(settings)).capabilities;
+    T value = (T) capabilities.get(kind);
+    if (value == null) {
+      value = loader.load();
+      if (value != null) {
+        T existing = (T) capabilities.putIfAbsent(kind, value);
+        if (existing != null) {
+          value = existing;
+        }
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Evicts cached table metadata and prepared statements after a change made through Javatator,
+   * from the pools of every user of the same database.  Does not create any pool.
+   *
+   * @param table  the altered table or <code>null</code> for all tables
+   */
+  static void invalidateMetadata(Settings settings, String table) throws SQLException {
+    PoolKey key = getKey(settings);
+    for (DatabasePool pool : pools.values()) {
+      if (
+          pool.database.equals(key.database)
+              && pool.hostname.equals(key.hostname)
+              && pool.port == key.port
+              && pool.databaseProduct.equals(key.databaseProduct)
+      ) {
+        if (table == null) {
+          pool.metadataCache.invalidateAll();
+        } else {
+          pool.metadataCache.invalidate(table);
+        }
+        pool.statementGeneration.incrementAndGet();
+      }
+    }
+  }
+
+  private static PoolKey getKey(Settings settings) throws SQLException {
+    // TODO: Could use ao-net-types for more validation here
+    String databaseProduct = settings.getDatabaseProduct();
+    if (databaseProduct == null || (databaseProduct = databaseProduct.trim()).length() == 0) {
+      throw new SQLException("databaseProduct not set");
+    }
+    String hostname = settings.getHostname();
+    if (hostname == null || (hostname = hostname.trim()).length() == 0) {
+      throw new SQLException("hostname not set");
+    }
+    int port = settings.getPort();
+    if (port < 1 || port > 65535) {
+      throw new SQLException("Invalid port: " + port);
+    }
+    String username = settings.getUsername();
+    if (username == null || (username = username.trim()).length() == 0) {
+      throw new SQLException("username not set");
+    }
+    String password = settings.getPassword();
+    if (password == null) {
+      password = "";
+    }
+    String database = settings.getDatabase();
+    if (database == null || (database = database.trim()).length() == 0) {
+      throw new SQLException("database not set");
+    }
+    return new PoolKey(databaseProduct, hostname, port, username, database, password);
+  }
+
+  private static DatabasePool getPool(Settings settings, PoolKey key) throws SQLException, IOException {
+    // Look for an existing pool
+    DatabasePool pool = pools.get(key);
+
+    // Create if not found
+    if (pool == null) {
+      DatabasePool newPool = new DatabasePool(
+          key,
+          settings.getDatabaseConfiguration(),
+          key.databaseProduct,
+          key.hostname,
+          key.port,
+          key.username,
+          settings.getPassword() == null ? "" : settings.getPassword(),
+          key.database,
+          settings.getUrl()
+      );
+      pool = pools.putIfAbsent(key, newPool);
+      if (pool == null) {
+        pool = newPool;
+        pool.startMaintenance();
+        String maxPools = settings.getDatabaseConfiguration().getProperty("maxpools");
+        if (maxPools != null && !maxPools.isEmpty()) {
+          evictLeastRecentlyUsed(Integer.parseInt(maxPools), pool);
+        }
+      }
+    }
+    return pool;
+  }
+
+  private static ReleaseOnCloseConnection getConnection(Settings settings, PoolKey key) throws SQLException, IOException {
+    while (true) {
+      DatabasePool pool = getPool(settings, key);
+
+      // Get an available connection from the pool
+      ReleaseOnCloseConnection conn = pool.getConnection0();
+      if (conn != null) {
+        return conn;
+      }
+      // Pool was closed, try again
+      pools.remove(key, pool);
+    }
+  }
+
+  /**
+   * Calls {@link #releaseConnection0(int, boolean)} when this
+   * connection is closed.  The connection is discarded instead of reused once it
+   * has thrown a {@linkplain FatalErrorMonitor#isFatal(java.sql.SQLException) fatal error}.
+   */
+  // TODO: Extend NoCloseConnectionWrapper instead
+  class ReleaseOnCloseConnection extends ConnectionWrapperImpl {
+
+    /**
+     * The pool slot this connection was checked-out from.
+     */
+    private final int slot;
+
+    private final long startTime;
+
+    private final String borrower;
+
+    /**
+     * Where the connection was checked-out, only recorded when leak detection is enabled.
+     */
+    private final Throwable borrowerStackTrace;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * Set once the connection has thrown a fatal error.
+     */
+    private final AtomicBoolean broken;
+
+    private boolean reported;
+
+    private ReleaseOnCloseConnection(Connection conn, int slot, long startTime) {
+      this(conn, slot, startTime, new AtomicBoolean());
+    }
+
+    private ReleaseOnCloseConnection(Connection conn, int slot, long startTime, AtomicBoolean broken) {
+      super(FatalErrorMonitor.wrap(conn, () -> broken.set(true)));
+      this.broken = broken;
+      this.slot = slot;
+      this.startTime = startTime;
+      Thread thread = Thread.currentThread();
+      this.borrower = thread.getName();
+      this.borrowerStackTrace = leakThreshold > 0 ? new Throwable("Checked-out by " + borrower) : null;
+    }
+
+    /**
+     * Gets the ID of the physical connection of this lease, loaded once per physical connection.
+     */
+    private Object getBackendId(MetadataCache.Loader<?> loader) throws SQLException, IOException {
+      Object backendId = backendIds[slot];
+      if (backendId == null) {
+        backendId = loader.load();
+        backendIds[slot] = backendId;
+      }
+      return backendId;
+    }
+
+    /**
+     * Calls {@link #releaseConnection0(int, boolean)}, the connection
+     * itself is not closed unless broken.  Subsequent calls have no effect.
+     */
+    @Override
+    public void close() throws SQLException {
+      if (released.compareAndSet(false, true)) {
+        releaseConnection0(slot, broken.get());
+      }
+    }
+
+    /**
+     * Forcibly takes the slot back from the borrower, closing the physical connection
+     * so any further use by the borrower fails.
+     */
+    private void reclaim() {
+      if (released.compareAndSet(false, true)) {
+        releaseConnection0(slot, true);
+      }
+    }
+  }
+
+  /**
+   * Shares a request's lease, ignoring {@link #close()} so the lease is kept for the rest of the request.
+   */
+  private static class RequestConnection extends ConnectionWrapperImpl {
+
+    private final ReleaseOnCloseConnection lease;
+
+    private RequestConnection(ReleaseOnCloseConnection lease) {
+      super(lease);
+      this.lease = lease;
+    }
+
+    /**
+     * The lease is not returned until the end of the request.
+     */
+    @Override
+    public void close() {
+      // Do nothing
+    }
+  }
+
+  /**
+   * Gets a connection to the database.  Multiple {@link Connection connections} to the database
+   * may exist at any moment. It takes the most recently released slot from the
+   * idle stack. If the slot has an open {@link Connection}, it returns that {@link Connection}
+   * object, otherwise creates a new {@link Connection connection}, adds it to the pool and also
+   * returns the {@link Connection} object.  If all the connections in the pool are
+   * busy, it waits in first-come-first-served order for up to <code>checkout.timeout</code>
+   * milliseconds for a connection to become available.
+   *
+   * @return  the connection or <code>null</code> when this pool has been closed
+   *
+   * @throws SQLTransientConnectionException when no connection became available in time
+   */
+  ReleaseOnCloseConnection getConnection0() throws SQLException, IOException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new SQLException(new InterruptedException());
+    }
+    long waitStart = System.nanoTime();
+    try {
+      // A zero timeout still honors the fairness of the semaphore, where tryAcquire() would barge
+      if (!availableSlots.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+        exhaustedCount.increment();
+        if (activeSlots < numConnections) {
+          unparkSlot();
+        }
+        if (!availableSlots.tryAcquire(checkoutTimeout, TimeUnit.MILLISECONDS)) {
+          timeoutCount.increment();
+          recordWait(System.nanoTime() - waitStart);
+          throw new SQLTransientConnectionException(
+              "Timed out after " + checkoutTimeout + " ms waiting for one of the " + numConnections
+                  + " connections to " + databaseProduct + "://" + hostname + ':' + port + '/' + database
+                  + ", " + availableSlots.getQueueLength() + " other requests are waiting"
+          );
+        }
+      }
+    } catch (InterruptedException err) {
+      // Restore the interrupted status
+      Thread.currentThread().interrupt();
+      throw new SQLException(err);
+    }
+    recordWait(System.nanoTime() - waitStart);
+    int slot = idleSlots.removeFirst();
+    if (closed) {
+      idleSlots.addFirst(slot);
+      availableSlots.release();
+      return null;
+    }
+    boolean success = false;
+    try {
+      long startTime = System.currentTimeMillis();
+      lastUsed = startTime;
+      startTimes[slot] = startTime;
+      Connection conn = connections[slot];
+      if (
+          conn != null
+              && validateIdle >= 0
+              && (startTime - Math.max(releaseTimes[slot], pingTimes[slot])) >= validateIdle
+              && !conn.isValid(validateTimeout)
+      ) {
+        evictedCount.increment();
+        connections[slot] = null;
+        disconnect(conn);
+        conn = null;
+      }
+      if (conn != null && conn.isClosed()) {
+        connections[slot] = null;
+        disconnect(conn);
+        conn = null;
+      }
+      if (conn == null) {
+        conn = connect();
+        connections[slot] = conn;
+        backendIds[slot] = null;
+        connectCount[slot]++;
+      }
+      busyConnections[slot] = true;
+      releaseTimes[slot] = 0;
+      connectionUses[slot]++;
+      int leased = leasedCount.incrementAndGet();
+      peakLeased.accumulateAndGet(leased, Math::max);
+      ReleaseOnCloseConnection lease = new ReleaseOnCloseConnection(conn, slot, startTime);
+      leases.set(slot, lease);
+      success = true;
+      return lease;
+    } finally {
+      if (!success) {
+        if (connections[slot] == null) {
+          idleSlots.addLast(slot);
+        } else {
+          idleSlots.addFirst(slot);
+        }
+        availableSlots.release();
+      }
+    }
+  }
+
+  /**
+   * Opens a new physical connection.
+   */
+  private Connection connect() throws SQLException {
+    if (!driverLoaded) {
+      try {
+        Class.forName(databaseConfiguration.getProperty("driver", databaseProduct));
+        driverLoaded = true;
+      } catch (ClassNotFoundException err) {
+        throw new SQLException(err);
+      }
+    }
+    // Connect while holding only this slot, so a slow host does not block other checkouts
+    acquireHostConnection();
+    // The host permit is taken first, so waiting for it cannot leave a trial of the breaker in progress
+    try {
+      breaker.beforeConnect();
+    } catch (SQLException | RuntimeException e) {
+      if (hostConnections != null) {
+        hostConnections.release();
+      }
+      throw e;
+    }
+    boolean connected = false;
+    boolean hostFailure = false;
+    try {
+      Connection conn = StatementCache.wrap(
+          DriverManager.getConnection(url, connectInfo),
+          statementCacheSize,
+          statementGeneration,
+          statementCacheHits,
+          statementCacheMisses
+      );
+      connected = true;
+      return conn;
+    } catch (SQLException e) {
+      hostFailure = HostCircuitBreaker.isHostFailure(e);
+      throw e;
+    } finally {
+      if (connected) {
+        breaker.success();
+      } else {
+        // Only an unreachable host counts, bad credentials must not lock out other users
+        if (hostFailure) {
+          breaker.failure();
+        } else {
+          breaker.aborted();
+        }
+        if (hostConnections != null) {
+          hostConnections.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Reserves one of the connections allowed to this pool's host.  When the host is at its limit,
+   * idle connections of other pools to the same host are closed to make room before waiting.
+   */
+  private void acquireHostConnection() throws SQLException {
+    if (hostConnections == null || hostConnections.tryAcquire()) {
+      return;
+    }
+    for (DatabasePool pool : pools.values()) {
+      if (
+          pool != this
+              && pool.hostConnections == hostConnections
+              && pool.closeLeastRecentlyUsed()
+              && hostConnections.tryAcquire()
+      ) {
+        return;
+      }
+    }
+    try {
+      if (!hostConnections.tryAcquire(checkoutTimeout, TimeUnit.MILLISECONDS)) {
+        throw new SQLTransientConnectionException(
+            "Timed out after " + checkoutTimeout + " ms waiting for one of the connections allowed to "
+                + databaseProduct + "://" + hostname + ':' + port
+        );
+      }
+    } catch (InterruptedException err) {
+      // Restore the interrupted status
+      Thread.currentThread().interrupt();
+      throw new SQLException(err);
+    }
+  }
+
+  /**
+   * Closes the least recently used idle connection, if any.
+   *
+   * @return  <code>true</code> when a connection was closed
+   */
+  private boolean closeLeastRecentlyUsed() {
+    List<Integer> held = new ArrayList<>();
+    try {
+      while (availableSlots.tryAcquire()) {
+        Integer slot = idleSlots.pollLast();
+        held.add(slot);
+        Connection conn = connections[slot];
+        if (conn != null) {
+          connections[slot] = null;
+          disconnect(conn);
           return true;
         }
       }
+      return false;
+    } finally {
+      for (Integer slot : held) {
+        idleSlots.addLast(slot);
+      }
+      availableSlots.release(held.size());
+    }
+  }
+
+  public String getDatabaseProduct() {
+    return databaseProduct;
+  }
+
+  public String getHostname() {
+    return hostname;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public String getDatabase() {
+    return database;
+  }
+
+  /**
+   * Gets the maximum number of connections in this pool.
+   */
+  public int getNumConnections() {
+    return numConnections;
+  }
+
+  /**
+   * Gets the number of connections this pool has currently sized itself to.
+   */
+  public int getActiveSlots() {
+    return activeSlots;
+  }
+
+  /**
+   * Checks if this pool connects to the same product, host, port and username
+   * as the given {@link Settings}.
+   */
+  public boolean isSameUser(Settings settings) {
+    return
+        databaseProduct.equals(settings.getDatabaseProduct())
+            && hostname.equals(settings.getHostname())
+            && port == settings.getPort()
+            && username.equals(settings.getUsername());
+  }
+
+  // The statistics below read the per-slot arrays without synchronization and are only approximate.
+
+  /**
+   * Gets the number of connections currently checked-out.
+   */
+  public int getBusyCount() {
+    int count = 0;
+    for (int c = 0; c < numConnections; c++) {
+      if (busyConnections[c]) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets the number of open connections not currently checked-out.
+   */
+  public int getIdleCount() {
+    int count = 0;
+    for (int c = 0; c < numConnections; c++) {
+      if (!busyConnections[c] && connections[c] != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets the total number of times connections have been checked-out.
+   */
+  public long getConnectionUses() {
+    long total = 0;
+    for (int c = 0; c < numConnections; c++) {
+      total += connectionUses[c];
+    }
+    return total;
+  }
+
+  /**
+   * Gets the total number of physical connections made, including reconnects.
+   */
+  public long getConnectCount() {
+    long total = 0;
+    for (int c = 0; c < numConnections; c++) {
+      total += connectCount[c];
+    }
+    return total;
+  }
+
+  /**
+   * Gets the total time connections have been checked-out, not including current leases, in milliseconds.
+   */
+  public long getTotalHoldTime() {
+    long total = 0;
+    for (int c = 0; c < numConnections; c++) {
+      total += totalTimes[c];
+    }
+    return total;
+  }
+
+  /**
+   * Gets the mean time connections have been checked-out, not including current leases, in milliseconds.
+   */
+  public long getMeanHoldTime() {
+    long completed = getConnectionUses() - getBusyCount();
+    return completed <= 0 ? 0 : getTotalHoldTime() / completed;
+  }
+
+  /**
+   * Gets the age of the oldest current lease, in milliseconds, or <code>0</code> when none are checked-out.
+   */
+  public long getLongestLease() {
+    long time = System.currentTimeMillis();
+    long longest = 0;
+    for (int c = 0; c < numConnections; c++) {
+      if (busyConnections[c]) {
+        long startTime = startTimes[c];
+        if (startTime != 0 && (time - startTime) > longest) {
+          longest = time - startTime;
+        }
+      }
+    }
+    return longest;
+  }
+
+  private void recordWait(long nanos) {
+    totalWaitTime.add(nanos);
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    int bucket = 0;
+    while (bucket < WAIT_HISTOGRAM_BOUNDS.length && millis >= WAIT_HISTOGRAM_BOUNDS[bucket]) {
+      bucket++;
+    }
+    waitHistogram.incrementAndGet(bucket);
+  }
+
+  /**
+   * Gets the upper bounds, in milliseconds, of each bucket of {@link #getWaitHistogram()}.
+   * The final bucket, with no upper bound, holds all longer waits.
+   */
+  public static long[] getWaitHistogramBounds() {
+    return WAIT_HISTOGRAM_BOUNDS.clone();
+  }
+
+  /**
+   * Gets the number of checkouts in each wait-time bucket.
+   */
+  public long[] getWaitHistogram() {
+    long[] counts = new long[waitHistogram.length()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = waitHistogram.get(i);
     }
-    return false;
+    return counts;
+  }
+
+  /**
+   * Gets the total time spent waiting for connections, in milliseconds.
+   */
+  public long getTotalWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(totalWaitTime.sum());
+  }
+
+  /**
+   * Gets the number of checkouts that found every connection busy.
+   */
+  public long getExhaustedCount() {
+    return exhaustedCount.sum();
   }
+
+  /**
+   * Gets the number of checkouts that timed-out waiting for a connection.
+   */
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  /**
+   * Gets the approximate number of threads waiting for a connection.
+   */
+  public int getWaitQueueLength() {
+    return availableSlots.getQueueLength();
+  }
+
+  /**
+   * Returns a slot to the pool.
+   *
+   * @param discard  when <code>true</code>, the physical connection is closed instead of reused
+   */
+  private void releaseConnection0(int slot, boolean discard) {
+    if (discard || closed) {
+      if (discard) {
+        evictedCount.increment();
+      }
+      Connection conn = connections[slot];
+      connections[slot] = null;
+      if (conn != null) {
+        disconnect(conn);
+      }
+    }
+    leases.set(slot, null);
+    busyConnections[slot] = false;
+    leasedCount.decrementAndGet();
+    long time = System.currentTimeMillis();
+    releaseTimes[slot] = time;
+    totalTimes[slot] += time - startTimes[slot];
+    // Push before releasing the permit, so the next thread to acquire a permit finds this slot.
+    // Empty slots go to the tail, so open connections are used first.
+    if (connections[slot] == null) {
+      idleSlots.addLast(slot);
+    } else {
+      idleSlots.addFirst(slot);
+    }
+    availableSlots.release();
+  }
+
+  /**
+   * Closes a physical connection opened by {@link #connect()}.
+   */
+  private void disconnect(Connection conn) {
+    try {
+      conn.close();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      if (hostConnections != null) {
+        hostConnections.release();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of connections discarded after a fatal error, failed validation or reclaim.
+   */
+  public long getEvictedCount() {
+    return evictedCount.sum();
+  }
+
+  /**
+   * Gets the number of prepared statements reused from the cache.
+   */
+  public long getStatementCacheHits() {
+    return statementCacheHits.sum();
+  }
+
+  /**
+   * Gets the number of prepared statements not found in the cache.
+   */
+  public long getStatementCacheMisses() {
+    return statementCacheMisses.sum();
+  }
+
+  /**
+   * Gets the number of leases reported as held too long.
+   */
+  public long getLeakCount() {
+    return leakCount.sum();
+  }
+
+  /**
+   * Gets the number of tables with cached metadata.
+   */
+  public int getMetadataCacheSize() {
+    return metadataCache.getSize();
+  }
+
+  /**
+   * Gets the number of table metadata lookups served from the cache.
+   */
+  public long getMetadataCacheHits() {
+    return metadataCache.getHits();
+  }
+
+  /**
+   * Gets the number of table metadata lookups that queried the database.
+   */
+  public long getMetadataCacheMisses() {
+    return metadataCache.getMisses();
+  }
+
 }
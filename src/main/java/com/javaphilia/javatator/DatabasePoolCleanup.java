@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2016, 2018, 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2016, 2018, 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,65 +27,131 @@
 
 package com.javaphilia.javatator;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
 /**
- * The DatabasePoolCleanup periodically calls the clean up functions to disconnect
- * any database connection that has been idle too long.
+ * Runs the periodic maintenance of each {@link DatabasePool} for the life of the application
+ * and closes all pooled connections on {@linkplain ServletContextListener application shutdown}.
  */
-// TODO: Make a servlet context listener and close all on context destroyed
-public class DatabasePoolCleanup extends Thread {
+@WebListener("Runs the periodic maintenance of the database connection pools.")
+public class DatabasePoolCleanup implements ServletContextListener {
 
   /**
-   * A reference to the thread is used to only allow one thread at a time.
+   * The time allowed for running maintenance to finish on shutdown, in milliseconds.
    */
-  private static DatabasePoolCleanup thread;
+  private static final long SHUTDOWN_TIMEOUT = 10000;
+
+  private static final Object lock = new Object();
+
+  private static ScheduledExecutorService executor;
 
   /**
-   * A {@link DatabasePoolCleanup} starts itself as a daemon thread upon instantiation
-   * and sets its priority to normal.
+   * Opens connections in the background, so a slow host does not hold up the maintenance of every pool.
    */
-  private DatabasePoolCleanup() {
-    super("Cleanup JDBC Connections");
-    setPriority(Thread.NORM_PRIORITY);
-    setDaemon(true);
-    start();
+  private static ExecutorService connector;
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    synchronized (lock) {
+      if (executor == null) {
+        executor = Executors.newSingleThreadScheduledExecutor(task -> {
+          Thread thread = new Thread(task, "Cleanup JDBC Connections");
+          thread.setPriority(Thread.NORM_PRIORITY);
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+      if (connector == null) {
+        connector = Executors.newCachedThreadPool(task -> {
+          Thread thread = new Thread(task, "Open JDBC Connections");
+          thread.setPriority(Thread.NORM_PRIORITY);
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
   }
 
-  /**
-   * Periodically polls every connection in the connection pool. If it finds a
-   * connection is idle for more than the {@link DatabasePool#MAX_IDLE_TIME},
-   * it closes the connection.
-   */
   @Override
-  public void run() {
-    while (!Thread.currentThread().isInterrupted()) {
+  public void contextDestroyed(ServletContextEvent event) {
+    ScheduledExecutorService stopping;
+    synchronized (lock) {
+      stopping = executor;
+      executor = null;
+      if (connector != null) {
+        connector.shutdownNow();
+        connector = null;
+      }
+    }
+    if (stopping != null) {
+      stopping.shutdownNow();
       try {
-        sleep(DatabasePool.CLEANUP_POLL_DELAY);
-        DatabasePool.cleanup();
+        stopping.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
       } catch (InterruptedException e) {
         e.printStackTrace();
         // Restore the interrupted status
         Thread.currentThread().interrupt();
-      } catch (ThreadDeath td) {
-        throw td;
-      } catch (Throwable t) {
-        t.printStackTrace();
+      }
+    }
+    DatabasePool.closeAll();
+  }
+
+  /**
+   * Runs a task that opens connections in the background.
+   * Any exception thrown by the task is logged.
+   *
+   * @return  <code>false</code> when the application is not running and the task was not run
+   */
+  static boolean execute(Runnable task) {
+    synchronized (lock) {
+      if (connector == null) {
+        return false;
+      }
+      connector.execute(() -> {
         try {
-          sleep(DatabasePool.CLEANUP_POLL_DELAY);
-        } catch (InterruptedException err) {
-          err.printStackTrace();
-          // Restore the interrupted status
-          Thread.currentThread().interrupt();
+          task.run();
+        } catch (ThreadDeath td) {
+          throw td;
+        } catch (Throwable t) {
+          t.printStackTrace();
         }
-      }
+      });
+      return true;
     }
   }
 
   /**
-   * Starts the RefreshConnection thread.  Does nothing if already started.
+   * Schedules a maintenance task to run repeatedly, with the given delay between runs.
+   * Any exception thrown by the task is logged and does not stop later runs.
+   *
+   * @return  the scheduled task or <code>null</code> when the application is not running
    */
-  public static synchronized void startThread() {
-    if (thread == null) {
-      thread = new DatabasePoolCleanup();
+  static ScheduledFuture<?> schedule(Runnable task, long delay) {
+    synchronized (lock) {
+      if (executor == null) {
+        return null;
+      }
+      return executor.scheduleWithFixedDelay(
+          () -> {
+            try {
+              task.run();
+            } catch (ThreadDeath td) {
+              throw td;
+            } catch (Throwable t) {
+              t.printStackTrace();
+            }
+          },
+          delay,
+          delay,
+          TimeUnit.MILLISECONDS
+      );
     }
   }
 }
@@ -0,0 +1,132 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.Statement;
+
+/**
+ * Wraps a {@link Connection} and the statements, result sets and meta data obtained from it,
+ * calling back when any of them throws an {@link SQLException} indicating the connection
+ * is no longer usable.
+ */
+final class FatalErrorMonitor implements InvocationHandler {
+
+  /**
+   * The interfaces whose instances are also monitored when returned from a monitored object,
+   * most specific first.
+   */
+  private static final Class<?>[] MONITORED = {
+      CallableStatement.class,
+      PreparedStatement.class,
+      Statement.class,
+      ResultSet.class,
+      DatabaseMetaData.class
+  };
+
+  /**
+   * Checks if an exception means the connection it came from should be discarded: any
+   * SQLState of class 08 (connection exception), or one of the JDBC exception types for a
+   * connection that cannot be recovered.
+   */
+  static boolean isFatal(SQLException e) {
+    for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+      if (
+          cause instanceof SQLNonTransientConnectionException
+              || cause instanceof SQLRecoverableException
+      ) {
+        return true;
+      }
+      String sqlState = cause.getSQLState();
+      if (sqlState != null && sqlState.startsWith("08")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Monitors the given connection.
+   *
+   * @param onFatal  called, possibly more than once, when a fatal error is thrown
+   */
+  static Connection wrap(Connection conn, Runnable onFatal) {
+    return wrap(Connection.class, conn, onFatal);
+  }
+
+  private static <T> T wrap(Class<T> iface, T target, Runnable onFatal) {
+    return iface.cast(Proxy.newProxyInstance(
+        FatalErrorMonitor.class.getClassLoader(),
+        new Class<?>[]{iface},
+        new FatalErrorMonitor(target, onFatal)
+    ));
+  }
+
+  private final Object target;
+
+  private final Runnable onFatal;
+
+  private FatalErrorMonitor(Object target, Runnable onFatal) {
+    this.target = target;
+    this.onFatal = onFatal;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    Object result;
+    try {
+      result = method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException && isFatal((SQLException) cause)) {
+        onFatal.run();
+      }
+      throw cause;
+    }
+    if (result != null && !"unwrap".equals(method.getName())) {
+      Class<?> returnType = method.getReturnType();
+      for (Class<?> iface : MONITORED) {
+        if (returnType == iface) {
+          return wrap0(iface, result);
+        }
+      }
+    }
+    return result;
+  }
+
+  private <T> T wrap0(Class<T> iface, Object result) {
+    return wrap(iface, iface.cast(result), onFatal);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import com.aoapps.lang.io.ContentType;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet that looks-up the first values of a foreign key starting with a prefix,
+ * so edit forms need not list every value of the referenced table.
+ *
+ * <p>Takes the same connection parameters as {@link Main}, along with the <code>column</code>
+ * of the current table and the <code>prefix</code> typed so far.  Responds with
+ * <code>{"values":[...],"more":true|false}</code>, where <code>more</code> means a longer
+ * prefix is needed to see the other values.</p>
+ */
+@WebServlet("/fkey-lookup")
+public class ForeignKeyLookup extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The most values returned, whatever the <code>fkeyrows</code> of the request.
+   */
+  private static final int MAX_VALUES = 1000;
+
+  @Override
+  public void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+    Settings settings = new Settings(getServletContext(), req);
+    String column = req.getParameter("column");
+    if (column == null || column.isEmpty()) {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "column required");
+      return;
+    }
+    String prefix = req.getParameter("prefix");
+    int pageSize = Math.min(Math.max(settings.getForeignKeyRows(), 1), MAX_VALUES);
+
+    List<String> values;
+    try {
+      // One more than the page to know when there are more
+      values = settings.getJdbcConnector().getReferencedValues(column, prefix, pageSize + 1);
+    } catch (SQLException e) {
+      throw new ServletException(e);
+    } finally {
+      try {
+        DatabasePool.releaseRequestConnections(req);
+      } catch (SQLException e) {
+        throw new ServletException(e);
+      }
+    }
+    if (values == null) {
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND, "Not a foreign key: " + column);
+      return;
+    }
+    boolean more = values.size() > pageSize;
+
+    resp.setContentType(ContentType.JSON);
+    resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    resp.setHeader("Cache-Control", "no-cache");
+    PrintWriter out = resp.getWriter();
+    out.print("{\"values\":[");
+    int size = more ? pageSize : values.size();
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        out.print(',');
+      }
+      printJsonString(out, values.get(i));
+    }
+    out.print("],\"more\":");
+    out.print(more);
+    out.print('}');
+  }
+
+  @Override
+  public void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+    doPost(req, resp);
+  }
+
+  /**
+   * Prints a value as a JSON string, or <code>null</code>.
+   */
+  private static void printJsonString(PrintWriter out, String s) {
+    if (s == null) {
+      out.print("null");
+      return;
+    }
+    out.print('"');
+    int len = s.length();
+    for (int c = 0; c < len; c++) {
+      char ch = s.charAt(c);
+      switch (ch) {
+        case '"':
+          out.print("\\\"");
+          break;
+        case '\\':
+          out.print("\\\\");
+          break;
+        case '\n':
+          out.print("\\n");
+          break;
+        case '\r':
+          out.print("\\r");
+          break;
+        case '\t':
+          out.print("\\t");
+          break;
+        default:
+          if (ch < ' ' || ch == '\u2028' || ch == '\u2029') {
+            out.print(String.format("\\u%04x", (int) ch));
+          } else {
+            out.print(ch);
+          }
+          break;
+      }
+    }
+    out.print('"');
+  }
+}
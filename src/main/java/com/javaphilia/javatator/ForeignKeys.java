@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2009, 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2009, 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -28,6 +28,7 @@
 package com.javaphilia.javatator;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -102,16 +103,16 @@ public class ForeignKeys {
       List<JdbcConnector.Boolean> areDeferrable,
       List<JdbcConnector.Boolean> areInitiallyDeferred
   ) {
-    this.constraintNames = constraintNames;
-    this.foreignKeys = foreignKeys;
-    this.foreignTables = foreignTables;
-    this.primaryKeys = primaryKeys;
-    this.primaryTables = primaryTables;
-    this.insertRules = insertRules;
-    this.deleteRules = deleteRules;
-    this.updateRules = updateRules;
-    this.areDeferrable = areDeferrable;
-    this.areInitiallyDeferred = areInitiallyDeferred;
+    this.constraintNames = Collections.unmodifiableList(constraintNames);
+    this.foreignKeys = Collections.unmodifiableList(foreignKeys);
+    this.foreignTables = Collections.unmodifiableList(foreignTables);
+    this.primaryKeys = Collections.unmodifiableList(primaryKeys);
+    this.primaryTables = Collections.unmodifiableList(primaryTables);
+    this.insertRules = Collections.unmodifiableList(insertRules);
+    this.deleteRules = Collections.unmodifiableList(deleteRules);
+    this.updateRules = Collections.unmodifiableList(updateRules);
+    this.areDeferrable = Collections.unmodifiableList(areDeferrable);
+    this.areInitiallyDeferred = Collections.unmodifiableList(areInitiallyDeferred);
     size = constraintNames.size();
   }
 
@@ -0,0 +1,158 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import java.net.SocketTimeoutException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.util.Arrays;
+
+/**
+ * Tracks connection failures to a single database host so that requests fail fast
+ * while the host is down instead of each waiting through its own connect timeout.
+ *
+ * <p>The breaker opens once {@code breaker.failures} connection attempts have failed
+ * within {@code breaker.window} milliseconds.  While open, attempts are refused for
+ * {@code breaker.opentime} milliseconds, after which a single trial attempt is allowed.
+ * A successful trial closes the breaker; a failed trial opens it again.</p>
+ *
+ * <p>Only failures that mean the host is unreachable are counted, as decided by
+ * {@link #isHostFailure(java.sql.SQLException)}.  The breaker is shared by all users of the
+ * host, so a mistyped password must not lock everyone else out.</p>
+ */
+class HostCircuitBreaker {
+
+  private final String host;
+
+  private final int failureThreshold;
+
+  private final long window;
+
+  private final long openTime;
+
+  /**
+   * The times of the most recent failures, used as a ring buffer.
+   */
+  private final long[] failureTimes;
+
+  private int failureIndex;
+
+  private long openUntil;
+
+  private boolean trialInProgress;
+
+  HostCircuitBreaker(String host, int failureThreshold, long window, long openTime) {
+    this.host = host;
+    this.failureThreshold = failureThreshold;
+    this.window = window;
+    this.openTime = openTime;
+    this.failureTimes = new long[Math.max(failureThreshold, 1)];
+  }
+
+  /**
+   * Called before opening a physical connection.
+   *
+   * @throws SQLException when the breaker is open and the attempt is refused
+   */
+  synchronized void beforeConnect() throws SQLException {
+    if (failureThreshold <= 0 || openUntil == 0) {
+      return;
+    }
+    long time = System.currentTimeMillis();
+    if (time < openUntil || trialInProgress) {
+      long wait = Math.max(openUntil - time, 0);
+      throw new SQLNonTransientConnectionException(
+          "Connections to " + host + " have been failing, not retrying for another " + ((wait + 999) / 1000) + " seconds",
+          "08001"
+      );
+    }
+    trialInProgress = true;
+  }
+
+  /**
+   * Called after a physical connection has been opened.
+   */
+  synchronized void success() {
+    if (openUntil != 0) {
+      // Closing: start counting failures afresh
+      openUntil = 0;
+      Arrays.fill(failureTimes, 0);
+    }
+    trialInProgress = false;
+  }
+
+  /**
+   * Called after a physical connection could not be opened for a reason other than the host
+   * being unreachable, such as bad credentials.  Ends any trial without counting a failure.
+   */
+  synchronized void aborted() {
+    trialInProgress = false;
+  }
+
+  /**
+   * Called after a physical connection could not be opened because the host is unreachable.
+   *
+   * @see #isHostFailure(java.sql.SQLException)
+   */
+  synchronized void failure() {
+    if (failureThreshold <= 0) {
+      return;
+    }
+    long time = System.currentTimeMillis();
+    failureTimes[failureIndex] = time;
+    failureIndex = (failureIndex + 1) % failureTimes.length;
+    // The oldest of the recorded failures is the next to be overwritten
+    long oldest = failureTimes[failureIndex];
+    if (trialInProgress || (oldest != 0 && (time - oldest) <= window)) {
+      openUntil = time + openTime;
+    }
+    trialInProgress = false;
+  }
+
+  /**
+   * Checks if an error opening a connection means the host is unreachable: any SQLState of
+   * class <code>08</code>, a {@link SQLNonTransientConnectionException}, a {@link SQLRecoverableException},
+   * or a login or socket timeout.  Authentication failures (class <code>28</code>) and other
+   * errors are not host failures.
+   */
+  static boolean isHostFailure(SQLException e) {
+    String sqlState = e.getSQLState();
+    if (
+        (sqlState != null && sqlState.startsWith("08"))
+            || e instanceof SQLNonTransientConnectionException
+            || e instanceof SQLRecoverableException
+            || e instanceof SQLTimeoutException
+    ) {
+      return true;
+    }
+    for (Throwable cause = e.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+      if (cause instanceof SocketTimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,6 +27,7 @@
 
 package com.javaphilia.javatator;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -61,9 +62,9 @@ public class Indexes {
       List<JdbcConnector.Boolean> areUnique,
       List<String> columns
   ) {
-    this.names = names;
-    this.areUnique = areUnique;
-    this.columns = columns;
+    this.names = Collections.unmodifiableList(names);
+    this.areUnique = Collections.unmodifiableList(areUnique);
+    this.columns = Collections.unmodifiableList(columns);
   }
 
   /**
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -28,6 +28,7 @@
 package com.javaphilia.javatator;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
@@ -44,10 +45,22 @@ public final class Info {
 
   /**
    * Prints information about the current database product in use.
+   * The information is read once per pool.
    *
    * @param settings  the database in use
    */
   public static Settings printDatabaseInfo(JavatatorWriter out, Settings settings) throws SQLException, IOException {
+    out.print(DatabasePool.getCapability(settings, "info", () -> {
+      StringWriter buffer = new StringWriter();
+      try (JavatatorWriter bufferOut = new JavatatorWriter(buffer)) {
+        printDatabaseInfo0(bufferOut, settings);
+      }
+      return buffer.toString();
+    }));
+    return settings;
+  }
+
+  private static void printDatabaseInfo0(JavatatorWriter out, Settings settings) throws SQLException, IOException {
     try (Connection conn = DatabasePool.getConnection(settings)) {
       DatabaseMetaData metaData = conn.getMetaData();
       out.print("<b>More database info:</b> Please note that these values result from querying the database driver "
@@ -173,7 +186,6 @@ public final class Info {
         out.endTable();
       }
     }
-    return settings;
   }
 
   private static void printInfoRow(JavatatorWriter out, String title, int value) {
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2018, 2019, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2018, 2019, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -56,6 +56,7 @@ public class InterbaseConnector extends JdbcConnector {
   @Override
   public void addIndex(String indexName, String column) throws SQLException, IOException {
     executeUpdate("CREATE INDEX " + indexName + " ON " + getSettings().getTable() + " (" + column + ')');
+    invalidateMetadata();
   }
 
   /**
@@ -89,6 +90,7 @@ public class InterbaseConnector extends JdbcConnector {
         pstmt.executeUpdate();
       }
     }
+    invalidateMetadata();
   }
 
   /**
@@ -100,6 +102,7 @@ public class InterbaseConnector extends JdbcConnector {
   @Override
   public void addUniqueIndex(String indexName, String column) throws SQLException, IOException {
     executeUpdate("CREATE UNIQUE INDEX " + indexName + " ON " + getSettings().getTable() + " (" + column + ')');
+    invalidateMetadata();
   }
 
   /**
@@ -160,6 +163,7 @@ public class InterbaseConnector extends JdbcConnector {
         addIndex(newColumn[i], newColumn[i]);
       }
     }
+    invalidateAllMetadata();
   }
 
   /**
@@ -178,6 +182,7 @@ public class InterbaseConnector extends JdbcConnector {
   @Override
   public void dropIndex(String indexName) throws SQLException, IOException {
     executeUpdate("DROP INDEX " + indexName);
+    invalidateMetadata();
   }
 
   /**
@@ -216,6 +221,7 @@ public class InterbaseConnector extends JdbcConnector {
     } else {
       throw new SQLException("The column " + column + " does not appear to be a primary key.");
     }
+    invalidateAllMetadata();
   }
 
   /**
@@ -253,13 +259,14 @@ public class InterbaseConnector extends JdbcConnector {
         .append(" TYPE ")
         .append(newType);
     executeUpdate(sql.toString());
+    invalidateAllMetadata();
   }
 
   /**
    * Gets a list of all the unique SQL functions supported by this database.
    */
   @Override
-  public List<String> getFunctionList() throws SQLException, IOException {
+  protected List<String> loadFunctionList() throws SQLException, IOException {
     // return executeListQuery("SELECT p.proname as Function FROM pg_proc p, pg_type t WHERE"
     //     + " p.prorettype = t.oid"
     //     + " and (pronargs = 0 or oidvectortypes(p.proargtypes) != '')"
@@ -271,7 +278,7 @@ public class InterbaseConnector extends JdbcConnector {
    * Gets the functions that may return the provided type.
    */
   @Override
-  public List<String> getFunctionList(String type) throws SQLException, IOException {
+  protected List<String> loadFunctionList(String type) throws SQLException, IOException {
     // return executeListQuery("SELECT p.proname as Function FROM pg_proc p, pg_type t WHERE"
     //     + " p.prorettype = t.oid"
     //     + " and t.typname=lower(?)"
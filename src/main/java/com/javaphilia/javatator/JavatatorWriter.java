@@ -4,7 +4,7 @@
  * Copyright (C) 2001  Dan Armstrong.
  *     dan@dans-home.com
  *
- * Copyright (C) 2019, 2022, 2023  AO Industries, Inc.
+ * Copyright (C) 2019, 2022, 2023, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -28,6 +28,7 @@ package com.javaphilia.javatator;
 
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 
 /**
  * Provides additional print methods for writing tables.
@@ -41,6 +42,13 @@ public class JavatatorWriter extends PrintWriter {
     super(out);
   }
 
+  /**
+   * Constructs this {@link JavatatorWriter}.
+   */
+  public JavatatorWriter(Writer out) {
+    super(out);
+  }
+
   /**
    * Ends the standard table.
    */
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2018, 2019, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2018, 2019, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -30,6 +30,8 @@ package com.javaphilia.javatator;
 import com.aoindustries.aoserv.client.mysql.Server;
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -37,11 +39,17 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Contains all the default JDBC methods to connect to a database.
@@ -92,6 +100,7 @@ public class JdbcConnector {
    */
   public void addCheckConstraint(String constraint, String checkClause) throws SQLException, IOException {
     executeUpdate("ALTER TABLE " + quoteTable(settings.getTable()) + " ADD CONSTRAINT " + constraint + " CHECK(" + checkClause + ')');
+    invalidateMetadata();
   }
 
   /**
@@ -141,6 +150,7 @@ public class JdbcConnector {
         .append(' ')
         .append(remarks);
     executeUpdate(sql.toString());
+    invalidateMetadata();
   }
 
   /**
@@ -184,6 +194,7 @@ public class JdbcConnector {
         .append(" INITIALLY ")
         .append(initially);
     executeUpdate(sql.toString());
+    invalidateAllMetadata();
   }
 
   /**
@@ -194,6 +205,7 @@ public class JdbcConnector {
    */
   public void addIndex(String indexName, String column) throws SQLException, IOException {
     executeUpdate("ALTER TABLE " + quoteTable(settings.getTable()) + " ADD INDEX " + indexName + " (" + quoteColumn(column) + ')');
+    invalidateMetadata();
   }
 
   /**
@@ -215,6 +227,7 @@ public class JdbcConnector {
         pstmt.executeUpdate();
       }
     }
+    invalidateMetadata();
   }
 
   /**
@@ -225,6 +238,7 @@ public class JdbcConnector {
    */
   public void addUniqueIndex(String indexName, String column) throws SQLException, IOException {
     executeUpdate("ALTER TABLE " + quoteTable(settings.getTable()) + " ADD UNIQUE " + indexName + " (" + quoteColumn(column) + ')');
+    invalidateMetadata();
   }
 
   protected void appendIsNull(StringBuilder sb, String column) {
@@ -245,6 +259,16 @@ public class JdbcConnector {
     return -1;
   }
 
+  /**
+   * Gets the estimated number of records in each table of the database, from the statistics
+   * kept by the server, in one query.  The estimates may be far from the actual counts.
+   *
+   * @return  the estimates by table name or {@code null} when not available
+   */
+  public Map<String, Long> getEstimatedRecordCounts() throws SQLException, IOException {
+    return null;
+  }
+
   /**
    * Creates a new database.
    *
@@ -306,6 +330,7 @@ public class JdbcConnector {
 
     // Execute the update next
     executeUpdate(sql.toString());
+    invalidateAllMetadata();
   }
 
   /**
@@ -315,6 +340,7 @@ public class JdbcConnector {
    */
   public void deleteColumn(String column) throws SQLException, IOException {
     executeUpdate("ALTER TABLE " + quoteTable(settings.getTable()) + " DROP " + quoteColumn(column));
+    invalidateAllMetadata();
   }
 
   /**
@@ -366,6 +392,7 @@ public class JdbcConnector {
             + " DROP CONSTRAINT "
             + constraint + ' ' + behaviour
     );
+    invalidateAllMetadata();
   }
 
   /**
@@ -382,6 +409,7 @@ public class JdbcConnector {
    */
   public void dropIndex(String indexName) throws SQLException, IOException {
     executeUpdate("ALTER TABLE " + quoteTable(settings.getTable()) + " DROP INDEX " + indexName);
+    invalidateMetadata();
   }
 
   /**
@@ -413,6 +441,7 @@ public class JdbcConnector {
         pstmt.executeUpdate();
       }
     }
+    invalidateAllMetadata();
   }
 
   /**
@@ -420,6 +449,7 @@ public class JdbcConnector {
    */
   public void dropTable() throws SQLException, IOException {
     executeUpdate("DROP TABLE " + quoteTable(settings.getTable()));
+    invalidateAllMetadata();
   }
 
   /**
@@ -430,25 +460,27 @@ public class JdbcConnector {
   public void dumpTableContents(Writer out) throws SQLException, IOException {
     try (Connection conn = DatabasePool.getConnection(settings)) {
       String table = settings.getTable();
-      try (
-          Statement stmt = conn.createStatement();
-          ResultSet r = stmt.executeQuery("SELECT * FROM " + quoteTable(table))
-          ) {
-        int count = r.getMetaData().getColumnCount();
-        while (r.next()) {
-          out.write("INSERT INTO ");
-          out.write(quoteTable(table));
-          out.write(" VALUES (");
-          boolean hasBeen = false;
-          for (int i = 1; i <= count; i++) {
-            if (hasBeen) {
-              out.write(',');
-            } else {
-              hasBeen = true;
+      try (Statement stmt = conn.createStatement()) {
+        RunningStatements.Running running = RunningStatements.start(settings, conn, stmt);
+        try (ResultSet r = stmt.executeQuery("SELECT * FROM " + quoteTable(table))) {
+          int count = r.getMetaData().getColumnCount();
+          while (r.next()) {
+            out.write("INSERT INTO ");
+            out.write(quoteTable(table));
+            out.write(" VALUES (");
+            boolean hasBeen = false;
+            for (int i = 1; i <= count; i++) {
+              if (hasBeen) {
+                out.write(',');
+              } else {
+                hasBeen = true;
+              }
+              Util.printEscapedSqlValue(out, r.getString(i));
             }
-            Util.printEscapedSqlValue(out, r.getString(i));
+            out.write(");\n");
           }
-          out.write(");\n");
+        } finally {
+          running.end();
         }
       }
     }
@@ -466,6 +498,7 @@ public class JdbcConnector {
     final List<String> lengths = columns.getLengths();
     final List<Boolean> areNullable = columns.areNullable();
     final List<String> defaults = columns.getDefaults();
+    final List<String> remarks = columns.getRemarks();
     out.write("CREATE TABLE ");
     out.write(quoteTable(settings.getTable()));
     out.write(" (");
@@ -495,8 +528,7 @@ public class JdbcConnector {
           out.write(defaults.get(i).substring(1));
         }
       }
-      String remark = getRemark(names.get(i));
-      if ("auto_increment".equalsIgnoreCase(remark)) {
+      if ("auto_increment".equalsIgnoreCase(remarks.get(i))) {
         out.write(" AUTO_INCREMENT");
       }
     }
@@ -568,6 +600,7 @@ public class JdbcConnector {
         .append(' ')
         .append(newRemarks);
     executeUpdate(sql.toString());
+    invalidateAllMetadata();
   }
 
   /**
@@ -673,6 +706,27 @@ public class JdbcConnector {
     }
   }
 
+  /**
+   * Gets the ID the server knows a connection by, to cancel its statements with {@link #cancelBackend(Object)}
+   * when the driver cannot.
+   *
+   * @return  the ID or {@code null} when not supported
+   */
+  protected Object getBackendId(Connection conn) throws SQLException, IOException {
+    return null;
+  }
+
+  /**
+   * Asks the server to cancel the statement running on another connection.
+   *
+   * @param  backendId  the ID from {@link #getBackendId(Connection)}
+   *
+   * @return  {@code true} when canceled
+   */
+  protected boolean cancelBackend(Object backendId) throws SQLException, IOException {
+    return false;
+  }
+
   /**
    * Executes an update using a {@link PreparedStatement}.
    *
@@ -685,7 +739,12 @@ public class JdbcConnector {
         Connection conn = DatabasePool.getConnection(settings);
         PreparedStatement pstmt = conn.prepareStatement(sql)
         ) {
-      return pstmt.executeUpdate();
+      RunningStatements.Running running = RunningStatements.start(settings, conn, pstmt);
+      try {
+        return pstmt.executeUpdate();
+      } finally {
+        running.end();
+      }
     }
   }
 
@@ -703,7 +762,12 @@ public class JdbcConnector {
         PreparedStatement pstmt = conn.prepareStatement(sql)
         ) {
       pstmt.setString(1, param);
-      return pstmt.executeUpdate();
+      RunningStatements.Running running = RunningStatements.start(settings, conn, pstmt);
+      try {
+        return pstmt.executeUpdate();
+      } finally {
+        running.end();
+      }
     }
   }
 
@@ -723,7 +787,12 @@ public class JdbcConnector {
         ) {
       pstmt.setString(1, param1);
       pstmt.setString(2, param2);
-      return pstmt.executeUpdate();
+      RunningStatements.Running running = RunningStatements.start(settings, conn, pstmt);
+      try {
+        return pstmt.executeUpdate();
+      } finally {
+        running.end();
+      }
     }
   }
 
@@ -746,27 +815,45 @@ public class JdbcConnector {
     }
   }
 
+  /**
+   * Evicts the cached metadata of the current table after altering it.
+   */
+  protected final void invalidateMetadata() throws SQLException {
+    DatabasePool.invalidateMetadata(settings, settings.getTable());
+  }
+
+  /**
+   * Evicts the cached metadata of all tables after changes that may also affect the
+   * foreign keys of other tables.
+   */
+  protected final void invalidateAllMetadata() throws SQLException {
+    DatabasePool.invalidateMetadata(settings, null);
+  }
+
   /**
    * Gets the CHECK constraints info for this table.
    */
-  public CheckConstraints getCheckConstraints() throws SQLException, IOException {
+  public final CheckConstraints getCheckConstraints() throws SQLException, IOException {
+    String table = settings.getTable();
+    return DatabasePool.getMetadataCache(settings).get(table, "checkConstraints", () -> loadCheckConstraints(table));
+  }
+
+  /**
+   * Queries the database for the CHECK constraints of a table.
+   */
+  protected CheckConstraints loadCheckConstraints(String table) throws SQLException, IOException {
     return null;
   }
 
   /**
-   * Gets a meta data column.
+   * Gets the index of a column in the columns of the current table.
    */
-  private String getColumnMetaData(String column, int index) throws SQLException, IOException {
-    try (
-        Connection conn = DatabasePool.getConnection(settings);
-        ResultSet r = conn.getMetaData().getColumns(null, null, settings.getTable(), column)
-        ) {
-      if (r.next()) {
-        return r.getString(index);
-      } else {
-        throw new SQLException("Column not found: " + column);
-      }
+  private static int getColumnId(Columns columns, String column) throws SQLException {
+    int id = columns.getId(column);
+    if (id == -1) {
+      throw new SQLException("Column not found: " + column);
     }
+    return id;
   }
 
   /**
@@ -776,7 +863,17 @@ public class JdbcConnector {
     return getColumns(settings.getTable());
   }
 
-  protected Columns getColumns(String table) throws SQLException, IOException {
+  /**
+   * Gets information about the columns in a table.
+   */
+  protected final Columns getColumns(String table) throws SQLException, IOException {
+    return DatabasePool.getMetadataCache(settings).get(table, "columns", () -> loadColumns(table));
+  }
+
+  /**
+   * Queries the database for the columns of a table.
+   */
+  protected Columns loadColumns(String table) throws SQLException, IOException {
     List<String> names = new ArrayList<>();
     List<String> types = new ArrayList<>();
     List<String> lengths = new ArrayList<>();
@@ -806,6 +903,13 @@ public class JdbcConnector {
     return new Columns(names, types, lengths, areNullable, defaults, remarks);
   }
 
+  /**
+   * Gets the version of the database server, which is cached by the pool.
+   */
+  protected String getDatabaseProductVersion() throws SQLException, IOException {
+    return DatabasePool.getDatabaseProductVersion(settings);
+  }
+
   /**
    * Gets the official database product name.
    */
@@ -842,37 +946,62 @@ public class JdbcConnector {
    */
   public List<SchemaTable> getDatabaseSchema() throws IOException, SQLException {
     List<String> tableNames = getTables();
-    int size = tableNames.size();
-    List<SchemaTable> schemaTables = new ArrayList<>(size);
-    for (int c = 0; c < size; c++) {
-      String tableName = tableNames.get(c);
-      SchemaTable schemaTable = new SchemaTable(tableName);
-
-      // Populate the columns
-      List<String> columns = getColumns(tableName).getNames();
-      int len = columns.size();
-      for (int d = 0; d < len; d++) {
-        schemaTable.getRow(columns.get(d));
+    Map<String, SchemaTable> schemaTables = new LinkedHashMap<>(tableNames.size() * 4 / 3 + 1);
+    for (String tableName : tableNames) {
+      schemaTables.put(tableName, new SchemaTable(tableName));
+    }
+    addSchemaColumns(schemaTables);
+    addSchemaForeignKeys(schemaTables);
+    return new ArrayList<>(schemaTables.values());
+  }
+
+  /**
+   * Adds the columns of every table to the schema, in one query for the whole database.
+   *
+   * @param schemaTables  the tables of the schema, by name
+   */
+  protected void addSchemaColumns(Map<String, SchemaTable> schemaTables) throws SQLException, IOException {
+    try (
+        Connection conn = DatabasePool.getConnection(settings);
+        ResultSet r = conn.getMetaData().getColumns(null, null, "%", "%")
+        ) {
+      while (r.next()) {
+        SchemaTable schemaTable = schemaTables.get(r.getString(3));
+        if (schemaTable != null) {
+          schemaTable.getRow(r.getString(4));
+        }
       }
+    }
+  }
 
-      // Add the foreign key constraints
-      ForeignKeys importedKeys = getImportedKeys(tableName);
+  /**
+   * Adds the foreign key constraints of every table to the schema.  There is no portable way
+   * to get the foreign keys of all tables at once, so this gets the imported keys of each table,
+   * several tables in parallel.  Connectors override this with a single query where possible.
+   *
+   * @param schemaTables  the tables of the schema, by name
+   */
+  protected void addSchemaForeignKeys(Map<String, SchemaTable> schemaTables) throws SQLException, IOException {
+    List<String> tableNames = new ArrayList<>(schemaTables.keySet());
+    List<ForeignKeys> allImportedKeys = TableTasks.forEachTable(
+        settings,
+        tableNames,
+        tableSettings -> tableSettings.getJdbcConnector().getImportedKeys()
+    );
+    int size = tableNames.size();
+    for (int c = 0; c < size; c++) {
+      SchemaTable schemaTable = schemaTables.get(tableNames.get(c));
+      ForeignKeys importedKeys = allImportedKeys.get(c);
       if (importedKeys != null) {
         List<String> primaryKeys = importedKeys.getPrimaryKeys();
         List<String> foreignTables = importedKeys.getForeignTables();
         List<String> foreignKeys = importedKeys.getForeignKeys();
-        len = primaryKeys.size();
+        int len = primaryKeys.size();
         for (int d = 0; d < len; d++) {
           schemaTable.getRow(primaryKeys.get(d)).addForeignKey(foreignTables.get(d), foreignKeys.get(d));
         }
       }
-
-      // Add to return list
-      schemaTables.add(schemaTable);
     }
-
-    // Return the list
-    return schemaTables;
   }
 
   /**
@@ -885,11 +1014,8 @@ public class JdbcConnector {
    *          with a {@code 'F'}.
    */
   public String getDefault(String column) throws SQLException, IOException {
-    String def = getColumnMetaData(column, 13);
-    if (def != null) {
-      return 'V' + def;
-    }
-    return null;
+    Columns columns = getColumns();
+    return columns.getDefault(getColumnId(columns, column));
   }
 
   /**
@@ -923,7 +1049,25 @@ public class JdbcConnector {
     return getForeignKeys(settings.getTable(), false);
   }
 
-  protected ForeignKeys getForeignKeys(String table, boolean isImported) throws SQLException, IOException {
+  /**
+   * Gets the foreign key data for a table.
+   *
+   * @param isImported Get the imported keys?
+   */
+  protected final ForeignKeys getForeignKeys(String table, boolean isImported) throws SQLException, IOException {
+    return DatabasePool.getMetadataCache(settings).get(
+        table,
+        isImported ? "importedKeys" : "exportedKeys",
+        () -> loadForeignKeys(table, isImported)
+    );
+  }
+
+  /**
+   * Queries the database for the foreign keys of a table.
+   *
+   * @param isImported Get the imported keys?
+   */
+  protected ForeignKeys loadForeignKeys(String table, boolean isImported) throws SQLException, IOException {
     try (
         Connection conn = DatabasePool.getConnection(settings);
         ResultSet r = isImported
@@ -987,9 +1131,17 @@ public class JdbcConnector {
   }
 
   /**
-   * Gets a list of all the unique SQL functions supported by this database.
+   * Gets a list of all the unique SQL functions supported by this database,
+   * loaded once per pool.
+   */
+  public final List<String> getFunctionList() throws SQLException, IOException {
+    return DatabasePool.getCapability(settings, "functions", () -> Collections.unmodifiableList(loadFunctionList()));
+  }
+
+  /**
+   * Loads the list of all the unique SQL functions supported by this database.
    */
-  public List<String> getFunctionList() throws SQLException, IOException {
+  protected List<String> loadFunctionList() throws SQLException, IOException {
     try (Connection conn = DatabasePool.getConnection(settings)) {
       Set<String> sv = new HashSet<>();
       List<String> v = new ArrayList<>();
@@ -1031,9 +1183,16 @@ public class JdbcConnector {
   }
 
   /**
-   * Gets the functions that may return the provided type.
+   * Gets the functions that may return the provided type, loaded once per pool.
+   */
+  public final List<String> getFunctionList(String type) throws SQLException, IOException {
+    return DatabasePool.getCapability(settings, "functions:" + type, () -> Collections.unmodifiableList(loadFunctionList(type)));
+  }
+
+  /**
+   * Loads the functions that may return the provided type.
    */
-  public List<String> getFunctionList(String type) throws SQLException, IOException {
+  protected List<String> loadFunctionList(String type) throws SQLException, IOException {
     return getFunctionList();
   }
 
@@ -1052,13 +1211,21 @@ public class JdbcConnector {
   /**
    * Gets a list of indexes for the selected table.
    */
-  public Indexes getIndexes() throws SQLException, IOException {
+  public final Indexes getIndexes() throws SQLException, IOException {
+    String table = settings.getTable();
+    return DatabasePool.getMetadataCache(settings).get(table, "indexes", () -> loadIndexes(table));
+  }
+
+  /**
+   * Queries the database for the indexes of a table.
+   */
+  protected Indexes loadIndexes(String table) throws SQLException, IOException {
     List<String> names = new ArrayList<>();
     List<Boolean> areUnique = new ArrayList<>();
     List<String> colNames = new ArrayList<>();
     try (
         Connection conn = DatabasePool.getConnection(settings);
-        ResultSet r = conn.getMetaData().getIndexInfo(null, null, settings.getTable(), false, false)
+        ResultSet r = conn.getMetaData().getIndexInfo(null, null, table, false, false)
         ) {
       while (r.next()) {
         names.add(r.getString(6));
@@ -1082,6 +1249,11 @@ public class JdbcConnector {
     }
   }
 
+  /**
+   * The constructor of each connector class, found once.
+   */
+  private static final ConcurrentMap<String, Constructor<? extends JdbcConnector>> constructors = new ConcurrentHashMap<>();
+
   /**
    * Gets a {@link JdbcConnector} of the provided classname and info.
    *
@@ -1091,11 +1263,13 @@ public class JdbcConnector {
       throws
       IOException,
       ReflectiveOperationException {
-    return
-        (JdbcConnector) Class
-            .forName(settings.getDatabaseConfiguration().getProperty("connector", settings.getDatabaseProduct()))
-            .getConstructor(Settings.class)
-            .newInstance(settings);
+    String className = settings.getDatabaseConfiguration().getProperty("connector", settings.getDatabaseProduct());
+    Constructor<? extends JdbcConnector> constructor = constructors.get(className);
+    if (constructor == null) {
+      constructor = Class.forName(className).asSubclass(JdbcConnector.class).getConstructor(Settings.class);
+      constructors.put(className, constructor);
+    }
+    return constructor.newInstance(settings);
   }
 
   /**
@@ -1142,17 +1316,46 @@ public class JdbcConnector {
    * @param column the name of the column,
    */
   public String getLength(String column) throws SQLException, IOException {
-    return getColumnMetaData(column, 7);
+    Columns columns = getColumns();
+    return columns.getLength(getColumnId(columns, column));
   }
 
   /**
    * Gets the LIMIT clause (nonstandard) for a specified part of a table.
+   * Uses the <code>limit.clause</code> of the database product, where
+   * <code>%o</code> is replaced with the number of rows to skip, <code>%n</code> the number of rows,
+   * and <code>%f</code> and <code>%l</code> the first and last row numbers, starting from one.
    *
    * @param startPos the starting row number to read from.
    * @param numRows the numbers of rows to read.
+   *
+   * @return the clause or {@code null} when not supported, in which case callers limit
+   *         the rows with {@link Statement#setMaxRows(int)} and skip rows themselves
    */
   public String getLimitClause(int startPos, int numRows) throws SQLException, IOException {
-    return null;
+    return formatLimitClause(
+        settings.getDatabaseConfiguration().getProperty("limit.clause", settings.getDatabaseProduct()),
+        startPos,
+        numRows
+    );
+  }
+
+  /**
+   * Replaces the placeholders of a <code>limit.clause</code>.
+   *
+   * @return the clause or {@code null} when the clause is {@code null} or empty
+   *
+   * @see #getLimitClause(int, int)
+   */
+  static String formatLimitClause(String clause, int startPos, int numRows) {
+    if (clause == null || clause.isEmpty()) {
+      return null;
+    }
+    return clause
+        .replace("%o", Integer.toString(startPos))
+        .replace("%n", Integer.toString(numRows))
+        .replace("%f", Long.toString((long) startPos + 1))
+        .replace("%l", Long.toString((long) startPos + numRows));
   }
 
   private static final List<String> possiblePrivileges = new ArrayList<>(6);
@@ -1197,12 +1400,20 @@ public class JdbcConnector {
   /**
    * Gets a list of primary keys in the selected table.
    */
-  public PrimaryKeys getPrimaryKeys() throws SQLException, IOException {
+  public final PrimaryKeys getPrimaryKeys() throws SQLException, IOException {
+    String table = settings.getTable();
+    return DatabasePool.getMetadataCache(settings).get(table, "primaryKeys", () -> loadPrimaryKeys(table));
+  }
+
+  /**
+   * Queries the database for the primary keys of a table.
+   */
+  protected PrimaryKeys loadPrimaryKeys(String table) throws SQLException, IOException {
     List<String> columns = new ArrayList<>();
     List<String> names = new ArrayList<>();
     try (
         Connection conn = DatabasePool.getConnection(settings);
-        ResultSet r = conn.getMetaData().getPrimaryKeys(null, null, settings.getTable())
+        ResultSet r = conn.getMetaData().getPrimaryKeys(null, null, table)
         ) {
       while (r.next()) {
         columns.add(r.getString(4));
@@ -1216,9 +1427,195 @@ public class JdbcConnector {
    * Gets the remark for the specified column.
    *
    * @param column the name of the column,
+   *
+   * @return the remark or {@code null} for none.
    */
   public String getRemark(String column) throws SQLException, IOException {
-    return getColumnMetaData(column, 12);
+    Columns columns = getColumns();
+    String remark = columns.getRemark(getColumnId(columns, column));
+    return remark.isEmpty() ? null : remark;
+  }
+
+  /**
+   * Gets the table and column referenced by a foreign key on the specified column of the current table,
+   * from the cached imported keys.
+   *
+   * @return  the referenced table and column or {@code null} when the column is not a foreign key
+   */
+  public String[] getReferencedColumn(String column) throws SQLException, IOException {
+    ForeignKeys foreignKeys = getImportedKeys();
+    if (foreignKeys != null) {
+      for (int c = 0; c < foreignKeys.getSize(); c++) {
+        if (column.equals(foreignKeys.getForeignKey(c))) {
+          return new String[]{foreignKeys.getPrimaryTable(c), foreignKeys.getPrimaryKey(c)};
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets the values of the key referenced by a foreign key column that start with a prefix,
+   * in order, for looking-up values as they are typed.  Only the first values are returned,
+   * a longer prefix narrows them down.
+   *
+   * @param column the name of the foreign key column.
+   * @param prefix the start of the values, empty for all values.
+   * @param numRows the maximum number of values to return.
+   *
+   * @return the values or {@code null} when the column is not a foreign key.
+   */
+  public List<String> getReferencedValues(String column, String prefix, int numRows) throws SQLException, IOException {
+    String[] key = getReferencedColumn(column);
+    if (key == null) {
+      return null;
+    }
+    String keyTable = key[0];
+    String keyColumn = "k." + quoteColumn(key[1]);
+    StringBuilder sql = new StringBuilder("SELECT ")
+        .append(keyColumn)
+        .append(" FROM ")
+        .append(quoteTable(keyTable))
+        .append(" k");
+    boolean hasPrefix = prefix != null && !prefix.isEmpty();
+    if (hasPrefix) {
+      // Compare character keys directly so an index may be used
+      Columns keyColumns = getColumns(keyTable);
+      int id = keyColumns.getId(key[1]);
+      String type = id == -1 ? "" : keyColumns.getType(id).toUpperCase();
+      sql
+          .append(" WHERE ")
+          .append(type.endsWith("CHAR") || type.endsWith("TEXT") ? keyColumn : castToText(keyColumn))
+          .append(" LIKE ? ESCAPE '!'");
+    }
+    sql.append(" ORDER BY ").append(keyColumn);
+    String limitClause = getLimitClause(0, numRows);
+    if (limitClause != null) {
+      sql.append(' ').append(limitClause);
+    }
+    try (
+        Connection conn = DatabasePool.getConnection(settings);
+        PreparedStatement pstmt = conn.prepareStatement(sql.toString())
+        ) {
+      if (limitClause == null) {
+        pstmt.setMaxRows(numRows);
+        pstmt.setFetchSize(numRows);
+      }
+      if (hasPrefix) {
+        pstmt.setString(1, prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + '%');
+      }
+      try (ResultSet results = pstmt.executeQuery()) {
+        List<String> values = new ArrayList<>();
+        while (values.size() < numRows && results.next()) {
+          values.add(results.getString(1));
+        }
+        return values;
+      }
+    }
+  }
+
+  /**
+   * The most values counted by each query of {@link #getReferenceCounts(java.lang.String, java.lang.String, java.util.Collection)}.
+   */
+  private static final int REFERENCE_COUNT_BATCH = 100;
+
+  /**
+   * Counts the rows of a table that reference each of the given values, in one grouped query
+   * for every hundred values.  The referencing column may read back differently than the
+   * referenced values, such as with padding or a different scale, so the values are matched
+   * by {@link #normalizeKey(java.lang.String)} when not equal.
+   *
+   * @param foreignTable the referencing table.
+   * @param foreignKey the referencing column.
+   * @param values the referenced values, without nulls.
+   *
+   * @return the number of rows referencing each value, keyed by the values as given,
+   *         values not referenced are not included.
+   */
+  public Map<String, Integer> getReferenceCounts(String foreignTable, String foreignKey, Collection<String> values) throws SQLException, IOException {
+    Map<String, Integer> counts = new HashMap<>();
+    if (!values.isEmpty()) {
+      String column = quoteColumn(foreignKey);
+      String parameter = getValueParameter(foreignTable, foreignKey);
+      List<String> list = new ArrayList<>(values);
+      try (Connection conn = DatabasePool.getConnection(settings)) {
+        for (int start = 0; start < list.size(); start += REFERENCE_COUNT_BATCH) {
+          List<String> batch = list.subList(start, Math.min(start + REFERENCE_COUNT_BATCH, list.size()));
+          Map<String, String> normalized = new HashMap<>();
+          for (String value : batch) {
+            normalized.putIfAbsent(normalizeKey(value), value);
+          }
+          StringBuilder sql = new StringBuilder("SELECT ")
+              .append(column)
+              .append(", COUNT(*) FROM ")
+              .append(quoteTable(foreignTable))
+              .append(" WHERE ")
+              .append(column)
+              .append(" IN (");
+          for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+              sql.append(',');
+            }
+            sql.append(parameter);
+          }
+          sql.append(") GROUP BY ").append(column);
+          try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < batch.size(); i++) {
+              pstmt.setString(i + 1, batch.get(i));
+            }
+            try (ResultSet results = pstmt.executeQuery()) {
+              while (results.next()) {
+                String key = results.getString(1);
+                String value = batch.contains(key) ? key : normalized.get(normalizeKey(key));
+                if (value != null) {
+                  counts.merge(value, results.getInt(2), Integer::sum);
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Normalizes a key value read as a string, so equal keys of different column types compare
+   * equal: trailing spaces of fixed-width types are removed, and numbers lose their trailing
+   * zeros after the decimal point.
+   */
+  static String normalizeKey(String value) {
+    if (value == null) {
+      return null;
+    }
+    int len = value.length();
+    while (len > 0 && value.charAt(len - 1) == ' ') {
+      len--;
+    }
+    value = value.substring(0, len);
+    if (!value.isEmpty() && (Character.isDigit(value.charAt(0)) || value.charAt(0) == '-' || value.charAt(0) == '.')) {
+      try {
+        BigDecimal number = new BigDecimal(value);
+        return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+      } catch (NumberFormatException e) {
+        // Not a number
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Gets the placeholder for a value of a column given as a string parameter.
+   */
+  protected String getValueParameter(String table, String column) throws SQLException, IOException {
+    return "?";
+  }
+
+  /**
+   * Converts an SQL expression to a character type, for use with <code>LIKE</code>.
+   */
+  protected String castToText(String expression) {
+    return "CAST(" + expression + " AS VARCHAR(255))";
   }
 
   /**
@@ -1386,9 +1783,16 @@ public class JdbcConnector {
   }
 
   /**
-   * Gets a list of types supported by the database.
+   * Gets a list of types supported by the database, loaded once per pool.
    */
-  public List<String> getTypes() throws SQLException, IOException {
+  public final List<String> getTypes() throws SQLException, IOException {
+    return DatabasePool.getCapability(settings, "types", () -> Collections.unmodifiableList(loadTypes()));
+  }
+
+  /**
+   * Loads the list of types supported by the database.
+   */
+  protected List<String> loadTypes() throws SQLException, IOException {
     try (
         Connection conn = DatabasePool.getConnection(settings);
         ResultSet r = conn.getMetaData().getTypeInfo()
@@ -1481,12 +1885,14 @@ public class JdbcConnector {
   }
 
   /**
-   * Is the specified column nullable?.
+   * Is the specified column nullable?.  Only {@link Boolean#TRUE} or {@link Boolean#FALSE},
+   * a column not known to be nullable is reported as {@link Boolean#FALSE}.
    *
    * @param column the name of the column,
    */
   public Boolean isNullable(String column) throws SQLException, IOException {
-    return "YES".equals(getColumnMetaData(column, 18)) ? Boolean.TRUE : Boolean.FALSE;
+    Columns columns = getColumns();
+    return columns.isNullable(getColumnId(columns, column)) == Boolean.TRUE ? Boolean.TRUE : Boolean.FALSE;
   }
 
   /**
@@ -1496,6 +1902,7 @@ public class JdbcConnector {
    */
   public void renameTable(String newTable) throws SQLException, IOException {
     executeUpdate("ALTER TABLE " + quoteTable(settings.getTable()) + " RENAME TO " + quoteTable(newTable));
+    invalidateAllMetadata();
   }
 
   /**
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2018, 2019, 2020, 2021, 2022, 2023, 2024  AO Industries, Inc.
+ * Copyright (C) 2018, 2019, 2020, 2021, 2022, 2023, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -35,6 +35,7 @@ import com.aoapps.web.resources.renderer.Renderer;
 import com.aoapps.web.resources.servlet.RegistryEE;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
 import javax.servlet.ServletContext;
@@ -90,6 +91,12 @@ public class Main extends HttpServlet {
       } else {
         printFrames(out, settings, action);
       }
+    } finally {
+      try {
+        DatabasePool.releaseRequestConnections(req);
+      } catch (SQLException e) {
+        throw new ServletException(e);
+      }
     }
   }
 
@@ -531,6 +538,8 @@ public class Main extends HttpServlet {
         Info.printDatabaseInfo(out, settings);
       } else if ("show_options".equals(action)) {
         showOptions(out, settings);
+      } else if ("show_pool_stats".equals(action)) {
+        PoolStats.printPoolStats(out, settings);
       } else if (settings.getDatabaseProduct() != null && settings.getHostname() != null && settings.getPort() > 0 && settings.getUsername() != null && settings.getDatabase() != null) {
         settings = new Database(settings).processRequest(out);
       } else {
@@ -729,7 +738,10 @@ public class Main extends HttpServlet {
             + "More&nbsp;Info</a>"
             + "&nbsp;|&nbsp;"
             + "<a href=\"javascript:changeProduct()\">"
-            + "Change&nbsp;Product</a><br>\n"
+            + "Change&nbsp;Product</a>"
+            + "&nbsp;|&nbsp;"
+            + "<a href=\"javascript:showPoolStats()\">"
+            + "Connection&nbsp;Stats</a><br>\n"
             + "<b>Driver: ");
         out.print(conn.getDriverName());
         out.print("</b> <a href=\"javascript:showOptions()\">Advanced Options</a>");
@@ -771,6 +783,16 @@ public class Main extends HttpServlet {
     out.endTd();
     out.endTr();
     out.startTr();
+    out.printTd("Query timeout (seconds, blank for the default):");
+    out.startTd();
+    out.print("<input type=text name=newquerytimeout value='");
+    if (settings.getRequestedQueryTimeout() != -1) {
+      out.print(settings.getRequestedQueryTimeout());
+    }
+    out.print("'>\n");
+    out.endTd();
+    out.endTr();
+    out.startTr();
     out.startTd("colspan=2");
     out.print("<input type=checkbox name=newusemultiline value=true");
     if (settings.useMultiLine()) {
@@ -0,0 +1,211 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches the metadata of the tables in one database, shared by all the requests
+ * using the same {@link DatabasePool}.  The cached values are immutable snapshots,
+ * kept until their time-to-live expires or the table is altered through Javatator.
+ * Expired entries are dropped when found and by {@link #purgeExpired()} during pool maintenance,
+ * so tables no longer browsed do not stay cached.
+ */
+final class MetadataCache {
+
+  /**
+   * Loads a value on a cache miss.
+   */
+  @FunctionalInterface
+  interface Loader<T> {
+    T load() throws SQLException, IOException;
+  }
+
+  private static final class Entry {
+
+    private final Object value;
+
+    private final long time;
+
+    private Entry(Object value, long time) {
+      this.value = value;
+      this.time = time;
+    }
+  }
+
+  /**
+   * The time-to-live of the entries, in milliseconds, zero disables the cache.
+   */
+  private final long ttl;
+
+  /**
+   * The entries of each table, by kind of metadata.
+   */
+  private final ConcurrentMap<String, ConcurrentMap<String, Entry>> tables = new ConcurrentHashMap<>();
+
+  /**
+   * The entries spanning all tables, by kind of metadata.
+   */
+  private final ConcurrentMap<String, Entry> database = new ConcurrentHashMap<>();
+
+  /**
+   * Incremented on every invalidation so values loaded concurrently are not stored stale.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  MetadataCache(long ttl) {
+    this.ttl = ttl;
+  }
+
+  /**
+   * Gets the metadata of a table, loading it when not cached or expired.
+   *
+   * @param table  the table name, <code>null</code> is never cached
+   * @param kind  the kind of metadata, such as <code>"columns"</code>
+   */
+  <T> T get(String table, String kind, Loader<T> loader) throws SQLException, IOException {
+    if (table == null) {
+      misses.increment();
+      return loader.load();
+    }
+    return get(tables.get(table), kind, loader, () -> tables.computeIfAbsent(table, t -> new ConcurrentHashMap<>()));
+  }
+
+  /**
+   * Gets metadata spanning all tables, such as the foreign keys of the whole database, loading it
+   * when not cached or expired.  It is evicted along with the metadata of any table.
+   *
+   * @param kind  the kind of metadata, such as <code>"allForeignKeys"</code>
+   */
+  <T> T getDatabase(String kind, Loader<T> loader) throws SQLException, IOException {
+    return get(database, kind, loader, () -> database);
+  }
+
+  /**
+   * @param entries  the entries to look in, <code>null</code> when none
+   * @param store  gets the entries to store a loaded value in
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T get(
+      ConcurrentMap<String, Entry> entries,
+      String kind,
+      Loader<T> loader,
+      Supplier<ConcurrentMap<String, Entry>> store
+  ) throws SQLException, IOException {
+    if (ttl <= 0) {
+      misses.increment();
+      return loader.load();
+    }
+    long time = System.currentTimeMillis();
+    if (entries != null) {
+      Entry entry = entries.get(kind);
+      if (entry != null) {
+        if (isFresh(entry, time)) {
+          hits.increment();
+          return (T) entry.value;
+        }
+        entries.remove(kind, entry);
+      }
+    }
+    misses.increment();
+    long startGeneration = generation.get();
+    T value = loader.load();
+    if (generation.get() == startGeneration) {
+      Entry entry = new Entry(value, time);
+      ConcurrentMap<String, Entry> storeEntries = store.get();
+      storeEntries.put(kind, entry);
+      // Discard if invalidated while storing
+      if (generation.get() != startGeneration) {
+        storeEntries.remove(kind, entry);
+      }
+    }
+    return value;
+  }
+
+  private boolean isFresh(Entry entry, long time) {
+    long age = time - entry.time;
+    return age >= 0 && age < ttl;
+  }
+
+  /**
+   * Drops the expired entries, and the tables left without any.
+   */
+  void purgeExpired() {
+    long time = System.currentTimeMillis();
+    database.values().removeIf(entry -> !isFresh(entry, time));
+    for (Map.Entry<String, ConcurrentMap<String, Entry>> table : tables.entrySet()) {
+      ConcurrentMap<String, Entry> entries = table.getValue();
+      entries.values().removeIf(entry -> !isFresh(entry, time));
+      if (entries.isEmpty()) {
+        tables.remove(table.getKey(), entries);
+      }
+    }
+  }
+
+  /**
+   * Evicts all the cached metadata of one table, and the metadata spanning all tables.
+   */
+  void invalidate(String table) {
+    if (table != null) {
+      generation.incrementAndGet();
+      tables.remove(table);
+      database.clear();
+    }
+  }
+
+  /**
+   * Evicts the cached metadata of all tables.
+   */
+  void invalidateAll() {
+    generation.incrementAndGet();
+    tables.clear();
+    database.clear();
+  }
+
+  /**
+   * Gets the number of tables with cached metadata.
+   */
+  int getSize() {
+    return tables.size();
+  }
+
+  long getHits() {
+    return hits.sum();
+  }
+
+  long getMisses() {
+    return misses.sum();
+  }
+}
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2018, 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2018, 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -36,7 +36,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The MySQL connection class. Implements things which the driver doesn't do using JDBC.
@@ -84,65 +86,138 @@ public class MysqlConnector extends JdbcConnector {
     super(settings);
   }
 
+  /**
+   * Gets the columns of all tables from <code>information_schema</code>, limited to the current database.
+   */
+  @Override
+  protected void addSchemaColumns(Map<String, SchemaTable> schemaTables) throws SQLException, IOException {
+    try (
+        Connection conn = DatabasePool.getConnection(settings);
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT TABLE_NAME, COLUMN_NAME FROM information_schema.COLUMNS"
+                + " WHERE TABLE_SCHEMA = DATABASE()"
+                + " ORDER BY TABLE_NAME, ORDINAL_POSITION"
+        );
+        ResultSet r = pstmt.executeQuery()
+        ) {
+      while (r.next()) {
+        SchemaTable schemaTable = schemaTables.get(r.getString(1));
+        if (schemaTable != null) {
+          schemaTable.getRow(r.getString(2));
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the foreign keys of all tables in one query on <code>information_schema</code>.
+   */
+  @Override
+  protected void addSchemaForeignKeys(Map<String, SchemaTable> schemaTables) throws SQLException, IOException {
+    try (
+        Connection conn = DatabasePool.getConnection(settings);
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT TABLE_NAME, COLUMN_NAME, REFERENCED_COLUMN_NAME FROM information_schema.KEY_COLUMN_USAGE"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME IS NOT NULL"
+                + " ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION"
+        );
+        ResultSet r = pstmt.executeQuery()
+        ) {
+      while (r.next()) {
+        String table = r.getString(1);
+        SchemaTable schemaTable = schemaTables.get(table);
+        if (schemaTable != null) {
+          schemaTable.getRow(r.getString(3)).addForeignKey(table, r.getString(2));
+        }
+      }
+    }
+  }
+
   @Override
-  protected Columns getColumns(String table) throws SQLException, IOException {
+  protected Columns loadColumns(String table) throws SQLException, IOException {
     List<String> names = new ArrayList<>();
     List<String> types = new ArrayList<>();
     List<String> lengths = new ArrayList<>();
     List<Boolean> areNullable = new ArrayList<>();
     List<String> defaults = new ArrayList<>();
     List<String> remarks = new ArrayList<>();
-    try (
-        Connection conn = DatabasePool.getConnection(settings);
-        ResultSet r = conn.getMetaData().getColumns(null, null, table, "%")
-        ) {
-      while (r.next()) {
-        String column = r.getString(4);
-        names.add(column);
-        String type = r.getString(6);
-        types.add(type);
-        if ("ENUM".equalsIgnoreCase(type) || "SET".equalsIgnoreCase(type)) {
-          List<String> v = getPossibleValues(column, type);
-          int size = v.size();
-          StringBuilder sb = new StringBuilder();
-          for (int i = 0; i < size; i++) {
-            if (i > 0) {
-              sb.append(',');
-            }
-            sb
-                .append('\'')
-                .append(v.get(i))
-                .append('\'');
+    try (Connection conn = DatabasePool.getConnection(settings)) {
+      // The values of all ENUM and SET columns, in one query before the columns are read
+      Map<String, String> enumValues = new HashMap<>();
+      try (
+          PreparedStatement pstmt = conn.prepareStatement(
+              "SELECT COLUMN_NAME, COLUMN_TYPE FROM information_schema.COLUMNS"
+                  + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND DATA_TYPE IN ('enum', 'set')"
+          )
+          ) {
+        pstmt.setString(1, table);
+        try (ResultSet r = pstmt.executeQuery()) {
+          while (r.next()) {
+            String columnType = r.getString(2);
+            enumValues.put(r.getString(1), columnType.substring(columnType.indexOf('(') + 1, columnType.lastIndexOf(')')));
           }
-          lengths.add(sb.toString());
-        } else {
-          lengths.add(r.getString(7));
         }
-        int nullable = r.getInt(11);
-        areNullable.add(
-            (nullable == DatabaseMetaData.columnNoNulls) ? Boolean.FALSE
-                : (nullable == DatabaseMetaData.columnNullable) ? Boolean.TRUE
-                : Boolean.UNKNOWN);
-        String def = r.getString(13);
-        int defLen = def.length();
-        if (
-            defLen >= 2
-                && def.charAt(0) == '\''
-                && def.charAt(defLen - 1) == '\''
-        ) {
-          defaults.add('V' + def.substring(1, defLen - 1));
-        } else if (defLen > 0) {
-          defaults.add('V' + def);
-        } else {
-          defaults.add(null);
+      }
+      try (ResultSet r = conn.getMetaData().getColumns(null, null, table, "%")) {
+        while (r.next()) {
+          String column = r.getString(4);
+          names.add(column);
+          types.add(r.getString(6));
+          // The quoted values of an ENUM or SET, as in its definition
+          String values = enumValues.get(column);
+          lengths.add(values != null ? values : r.getString(7));
+          int nullable = r.getInt(11);
+          areNullable.add(
+              (nullable == DatabaseMetaData.columnNoNulls) ? Boolean.FALSE
+                  : (nullable == DatabaseMetaData.columnNullable) ? Boolean.TRUE
+                  : Boolean.UNKNOWN);
+          String def = r.getString(13);
+          int defLen = def.length();
+          if (
+              defLen >= 2
+                  && def.charAt(0) == '\''
+                  && def.charAt(defLen - 1) == '\''
+          ) {
+            defaults.add('V' + def.substring(1, defLen - 1));
+          } else if (defLen > 0) {
+            defaults.add('V' + def);
+          } else {
+            defaults.add(null);
+          }
+          String rem = r.getString(12);
+          remarks.add((rem != null) ? rem : "");
         }
-        String rem = r.getString(12);
-        remarks.add((rem != null) ? rem : "");
       }
     }
     return new Columns(names, types, lengths, areNullable, defaults, remarks);
   }
 
+  /**
+   * Uses <code>information_schema.TABLES.TABLE_ROWS</code>, which is only an estimate for InnoDB.
+   */
+  @Override
+  public Map<String, Long> getEstimatedRecordCounts() throws SQLException, IOException {
+    try (
+        Connection conn = DatabasePool.getConnection(settings);
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT TABLE_NAME, TABLE_ROWS FROM information_schema.TABLES"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_ROWS IS NOT NULL"
+        );
+        ResultSet r = pstmt.executeQuery()
+        ) {
+      Map<String, Long> estimates = new HashMap<>();
+      while (r.next()) {
+        estimates.put(r.getString(1), r.getLong(2));
+      }
+      return estimates;
+    }
+  }
+
+  @Override
+  protected String castToText(String expression) {
+    return "CAST(" + expression + " AS CHAR)";
+  }
+
   /**
    * Not defined in MySQL.
    */
@@ -183,53 +258,52 @@ public class MysqlConnector extends JdbcConnector {
   /**
    * Gets the possible values for a column.  For an <code>ENUM</code> or <code>SET</code> type return all
    * the possible values, for any other return {@code null}.
+   * The values are parsed from the cached columns.
    *
    * @return the list of all possible values or {@code null} if not known
    */
   @Override
-  @SuppressWarnings("AssignmentToForLoopParameter")
   public List<String> getPossibleValues(String column, String type) throws SQLException, IOException {
-    boolean enum0 = "ENUM".equalsIgnoreCase(type) || "SET".equalsIgnoreCase(type);
-    if (enum0) {
-      try (
-          Connection conn = DatabasePool.getConnection(getSettings());
-          PreparedStatement pstmt = conn.prepareStatement("SHOW COLUMNS FROM " + getSettings().getTable() + " LIKE ?")
-          ) {
-        pstmt.setString(1, column);
-        try (ResultSet results = pstmt.executeQuery()) {
-          if (results.next()) {
-            String s = results.getString(2);
-            int len = s.length();
-            if (enum0) {
-              s = s.substring(6, len - 2);
-              len -= 10;
-            } else {
-              s = s.substring(5, len - 2);
-              len -= 9;
-            }
-            // Split up into tokens on ','
-            List<String> v = new ArrayList<>();
-            int start = 0;
-            for (int i = 0; i < len; i++) {
-              if (
-                  s.charAt(i) == '\''
-                      && s.charAt(i + 1) == ','
-                      && s.charAt(i + 2) == '\''
-              ) {
-                v.add(Util.escapeMysqlQuotes(s.substring(start, i)));
-                start = i + 3;
-                i += 3;
-              }
-            }
-            v.add(Util.escapeMysqlQuotes(s.substring(start)));
-            return v;
-          }
-        }
+    if ("ENUM".equalsIgnoreCase(type) || "SET".equalsIgnoreCase(type)) {
+      Columns columns = getColumns();
+      int id = columns.getId(column);
+      if (id != -1) {
+        return parseEnumValues(columns.getLength(id));
       }
     }
     return null;
   }
 
+  /**
+   * Parses the quoted, comma-separated values of an <code>ENUM</code> or <code>SET</code>,
+   * where quotes within values are doubled.
+   */
+  static List<String> parseEnumValues(String values) {
+    List<String> v = new ArrayList<>();
+    StringBuilder value = null;
+    int len = values.length();
+    for (int i = 0; i < len; i++) {
+      char ch = values.charAt(i);
+      if (value == null) {
+        // Between values
+        if (ch == '\'') {
+          value = new StringBuilder();
+        }
+      } else if (ch == '\'') {
+        if (i + 1 < len && values.charAt(i + 1) == '\'') {
+          value.append('\'');
+          i++;
+        } else {
+          v.add(value.toString());
+          value = null;
+        }
+      } else {
+        value.append(ch);
+      }
+    }
+    return v;
+  }
+
   /**
    * Not defined in MySQL.
    */
@@ -289,7 +363,7 @@ public class MysqlConnector extends JdbcConnector {
    * Gets a list of types supported by the database.
    */
   @Override
-  public List<String> getTypes() {
+  protected List<String> loadTypes() {
     return unmodifiableTypes;
   }
 
@@ -328,6 +402,7 @@ public class MysqlConnector extends JdbcConnector {
   @Override
   public void renameTable(String newTable) throws SQLException, IOException {
     executeUpdate("ALTER TABLE " + getSettings().getTable() + " RENAME " + newTable);
+    invalidateAllMetadata();
   }
 
   @Override
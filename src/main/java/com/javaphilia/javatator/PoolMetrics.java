@@ -0,0 +1,171 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import com.aoapps.lang.io.ContentType;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exports the statistics of all connection pools as plain text in the Prometheus text format.
+ * Since the labels include the hostnames, databases and usernames of every pool, it is disabled
+ * unless <code>db.metrics.token</code> is configured, and then requires that token as a bearer token
+ * in the <code>Authorization</code> header.
+ */
+@WebServlet("/pool-metrics")
+public class PoolMetrics extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final class Metric {
+
+    private final String name;
+    private final String type;
+    private final ToLongFunction<DatabasePool> value;
+
+    private Metric(String name, String type, ToLongFunction<DatabasePool> value) {
+      this.name = name;
+      this.type = type;
+      this.value = value;
+    }
+  }
+
+  private static final Metric[] metrics = {
+      new Metric("javatator_pool_connections_max", "gauge", DatabasePool::getNumConnections),
+      new Metric("javatator_pool_connections_active", "gauge", DatabasePool::getActiveSlots),
+      new Metric("javatator_pool_connections_busy", "gauge", DatabasePool::getBusyCount),
+      new Metric("javatator_pool_connections_idle", "gauge", DatabasePool::getIdleCount),
+      new Metric("javatator_pool_uses_total", "counter", DatabasePool::getConnectionUses),
+      new Metric("javatator_pool_hold_milliseconds_total", "counter", DatabasePool::getTotalHoldTime),
+      new Metric("javatator_pool_connects_total", "counter", DatabasePool::getConnectCount),
+      new Metric("javatator_pool_longest_lease_milliseconds", "gauge", DatabasePool::getLongestLease),
+      new Metric("javatator_pool_waiting", "gauge", DatabasePool::getWaitQueueLength),
+      new Metric("javatator_pool_exhausted_total", "counter", DatabasePool::getExhaustedCount),
+      new Metric("javatator_pool_timeouts_total", "counter", DatabasePool::getTimeoutCount),
+      new Metric("javatator_pool_evicted_total", "counter", DatabasePool::getEvictedCount),
+      new Metric("javatator_pool_leaks_total", "counter", DatabasePool::getLeakCount),
+      new Metric("javatator_pool_statement_cache_hits_total", "counter", DatabasePool::getStatementCacheHits),
+      new Metric("javatator_pool_statement_cache_misses_total", "counter", DatabasePool::getStatementCacheMisses),
+      new Metric("javatator_pool_metadata_cache_tables", "gauge", DatabasePool::getMetadataCacheSize),
+      new Metric("javatator_pool_metadata_cache_hits_total", "counter", DatabasePool::getMetadataCacheHits),
+      new Metric("javatator_pool_metadata_cache_misses_total", "counter", DatabasePool::getMetadataCacheMisses)
+  };
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    String token = DatabaseConfiguration.getInstance(getServletContext()).getProperty("metrics.token");
+    if (token == null || token.isEmpty()) {
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    if (!isAuthorized(req, token)) {
+      resp.setHeader("WWW-Authenticate", "Bearer");
+      resp.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+      return;
+    }
+    resp.setContentType(ContentType.TEXT);
+    resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    List<DatabasePool> pools = DatabasePool.getPools();
+    PrintWriter out = resp.getWriter();
+    // All samples of a metric are grouped after its type
+    for (Metric metric : metrics) {
+      printType(out, metric.name, metric.type);
+      for (DatabasePool pool : pools) {
+        printMetric(out, metric.name, getLabels(pool), metric.value.applyAsLong(pool));
+      }
+    }
+    long[] bounds = DatabasePool.getWaitHistogramBounds();
+    printType(out, "javatator_pool_wait_milliseconds", "histogram");
+    for (DatabasePool pool : pools) {
+      String labels = getLabels(pool);
+      // Cumulative buckets
+      long[] histogram = pool.getWaitHistogram();
+      long count = 0;
+      for (int i = 0; i < histogram.length; i++) {
+        count += histogram[i];
+        String le = i < bounds.length ? Long.toString(bounds[i]) : "+Inf";
+        printMetric(out, "javatator_pool_wait_milliseconds_bucket", labels + ",le=\"" + le + '"', count);
+      }
+      printMetric(out, "javatator_pool_wait_milliseconds_sum", labels, pool.getTotalWaitTime());
+      printMetric(out, "javatator_pool_wait_milliseconds_count", labels, count);
+    }
+  }
+
+  /**
+   * Checks that a request carries the metrics token as a bearer token, also used by {@link PoolStats}
+   * for the totals of all pools.
+   *
+   * @param token  the <code>db.metrics.token</code>, never authorized when <code>null</code> or empty
+   */
+  static boolean isAuthorized(HttpServletRequest req, String token) {
+    if (token == null || token.isEmpty()) {
+      return false;
+    }
+    String authorization = req.getHeader("Authorization");
+    return
+        authorization != null
+            && MessageDigest.isEqual(
+                ("Bearer " + token).getBytes(StandardCharsets.UTF_8),
+                authorization.getBytes(StandardCharsets.UTF_8)
+            );
+  }
+
+  private static String getLabels(DatabasePool pool) {
+    return "product=\"" + escapeLabel(pool.getDatabaseProduct())
+        + "\",host=\"" + escapeLabel(pool.getHostname())
+        + "\",port=\"" + pool.getPort()
+        + "\",database=\"" + escapeLabel(pool.getDatabase())
+        + "\",username=\"" + escapeLabel(pool.getUsername())
+        + '"';
+  }
+
+  private static String escapeLabel(String s) {
+    return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static void printType(PrintWriter out, String name, String type) {
+    out.print("# TYPE ");
+    out.print(name);
+    out.print(' ');
+    out.print(type);
+    out.print('\n');
+  }
+
+  private static void printMetric(PrintWriter out, String name, String labels, long value) {
+    out.print(name);
+    out.print('{');
+    out.print(labels);
+    out.print("} ");
+    out.print(value);
+    out.print('\n');
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Shows statistics about the database connection pools.
+ */
+public final class PoolStats {
+
+  /** Make no instances. */
+  private PoolStats() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The statistics of one pool, or the totals of many.
+   */
+  private static final class Stats {
+
+    private int numConnections;
+    private int active;
+    private int busy;
+    private int idle;
+    private long uses;
+    private long holdTime;
+    private long connects;
+    private long longestLease;
+    private int waiting;
+    private long exhausted;
+    private long timeouts;
+    private long waitTime;
+    private long evicted;
+    private long leaks;
+    private long statementHits;
+    private long statementMisses;
+    private long metadataHits;
+    private long metadataMisses;
+
+    private void add(DatabasePool pool) {
+      numConnections += pool.getNumConnections();
+      active += pool.getActiveSlots();
+      busy += pool.getBusyCount();
+      idle += pool.getIdleCount();
+      uses += pool.getConnectionUses();
+      holdTime += pool.getTotalHoldTime();
+      connects += pool.getConnectCount();
+      longestLease = Math.max(longestLease, pool.getLongestLease());
+      waiting += pool.getWaitQueueLength();
+      exhausted += pool.getExhaustedCount();
+      timeouts += pool.getTimeoutCount();
+      waitTime += pool.getTotalWaitTime();
+      evicted += pool.getEvictedCount();
+      leaks += pool.getLeakCount();
+      statementHits += pool.getStatementCacheHits();
+      statementMisses += pool.getStatementCacheMisses();
+      metadataHits += pool.getMetadataCacheHits();
+      metadataMisses += pool.getMetadataCacheMisses();
+    }
+  }
+
+  /**
+   * Prints the statistics of the pools for the current user.  The totals of all pools are
+   * only printed to requests authorized for <code>/pool-metrics</code>, since they reveal
+   * the use of the databases of other users.
+   *
+   * @param settings  the database in use
+   */
+  public static Settings printPoolStats(JavatatorWriter out, Settings settings) {
+    List<DatabasePool> pools = DatabasePool.getPools();
+    out.print("<b>Database connection stats:</b> Times are in milliseconds.<br><br>\n");
+
+    out.print("<b>Your connections:</b><br>\n");
+    out.startTable(null, "cellspacing=1");
+    try {
+      printHeader(out, "Database");
+      for (DatabasePool pool : pools) {
+        if (pool.isSameUser(settings)) {
+          Stats stats = new Stats();
+          stats.add(pool);
+          printRow(out, pool.getDatabase(), stats);
+        }
+      }
+    } finally {
+      out.endTable();
+    }
+
+    HttpServletRequest request = settings.getRequest();
+    if (
+        request != null
+            && PoolMetrics.isAuthorized(request, settings.getDatabaseConfiguration().getProperty("metrics.token"))
+    ) {
+      out.print("<br><b>Overall:</b><br>\n");
+      out.startTable(null, "cellspacing=1");
+      try {
+        printHeader(out, "Pools");
+        Stats totals = new Stats();
+        for (DatabasePool pool : pools) {
+          totals.add(pool);
+        }
+        printRow(out, Integer.toString(pools.size()), totals);
+      } finally {
+        out.endTable();
+      }
+    }
+    return settings;
+  }
+
+  private static void printHeader(JavatatorWriter out, String label) {
+    out.startTr();
+    out.printTh(label);
+    out.printTh("Busy");
+    out.printTh("Idle");
+    out.printTh("Active");
+    out.printTh("Max");
+    out.printTh("Uses");
+    out.printTh("Mean&nbsp;Hold");
+    out.printTh("Connects");
+    out.printTh("Longest&nbsp;Lease");
+    out.printTh("Waiting");
+    out.printTh("Exhausted");
+    out.printTh("Timeouts");
+    out.printTh("Mean&nbsp;Wait");
+    out.printTh("Evicted");
+    out.printTh("Leaks");
+    out.printTh("Statement&nbsp;Hits");
+    out.printTh("Statement&nbsp;Misses");
+    out.printTh("Metadata&nbsp;Hits");
+    out.printTh("Metadata&nbsp;Misses");
+    out.endTr();
+  }
+
+  private static void printRow(JavatatorWriter out, String label, Stats stats) {
+    out.startTr();
+    out.printTd(Util.escapeHtml(label));
+    out.printTd(stats.busy);
+    out.printTd(stats.idle);
+    out.printTd(stats.active);
+    out.printTd(stats.numConnections);
+    out.printTd(stats.uses);
+    long completed = stats.uses - stats.busy;
+    out.printTd(completed <= 0 ? 0 : stats.holdTime / completed);
+    out.printTd(stats.connects);
+    out.printTd(stats.longestLease);
+    out.printTd(stats.waiting);
+    out.printTd(stats.exhausted);
+    out.printTd(stats.timeouts);
+    out.printTd(stats.uses <= 0 ? 0 : stats.waitTime / stats.uses);
+    out.printTd(stats.evicted);
+    out.printTd(stats.leaks);
+    out.printTd(stats.statementHits);
+    out.printTd(stats.statementMisses);
+    out.printTd(stats.metadataHits);
+    out.printTd(stats.metadataMisses);
+    out.endTr();
+  }
+}
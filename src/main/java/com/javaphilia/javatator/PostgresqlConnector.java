@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2009, 2015, 2017, 2018, 2019, 2020, 2021, 2022, 2023, 2024  AO Industries, Inc.
+ * Copyright (C) 2009, 2015, 2017, 2018, 2019, 2020, 2021, 2022, 2023, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -37,9 +37,10 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 /**
@@ -54,6 +55,125 @@ public class PostgresqlConnector extends JdbcConnector {
     super(settings);
   }
 
+  /**
+   * Is the server PostgreSQL 7, which keeps foreign keys in triggers?
+   */
+  private boolean isVersion7() throws SQLException, IOException {
+    return getDatabaseProductVersion().startsWith("7.");
+  }
+
+  /**
+   * Is the server at least the given version?
+   */
+  private boolean isVersionAtLeast(int major, int minor) throws SQLException, IOException {
+    String[] parts = getDatabaseProductVersion().split("\\D+");
+    int serverMajor = Integer.parseInt(parts[0]);
+    int serverMinor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+    return serverMajor > major || (serverMajor == major && serverMinor >= minor);
+  }
+
+  /**
+   * Gets the columns of all tables from <code>pg_catalog</code>, skipping the system schemas.
+   */
+  @Override
+  protected void addSchemaColumns(Map<String, SchemaTable> schemaTables) throws SQLException, IOException {
+    try (
+        Connection conn = DatabasePool.getConnection(settings);
+        PreparedStatement pstmt = conn.prepareStatement(
+            "SELECT c.relname, a.attname"
+                + " FROM pg_catalog.pg_class c"
+                + "   INNER JOIN pg_catalog.pg_namespace n ON c.relnamespace = n.oid"
+                + "   INNER JOIN pg_catalog.pg_attribute a ON a.attrelid = c.oid"
+                + " WHERE c.relkind = 'r'"
+                + "   AND n.nspname NOT IN ('pg_catalog', 'information_schema')"
+                + "   AND a.attnum > 0"
+                + "   AND NOT a.attisdropped"
+                + " ORDER BY c.relname, a.attnum"
+        );
+        ResultSet r = pstmt.executeQuery()
+        ) {
+      while (r.next()) {
+        SchemaTable schemaTable = schemaTables.get(r.getString(1));
+        if (schemaTable != null) {
+          schemaTable.getRow(r.getString(2));
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the foreign keys of all tables in one query on <code>pg_constraint</code>, with one
+   * row per column of multi-column keys.  PostgreSQL 7 still gets the keys of each table.
+   */
+  @Override
+  protected void addSchemaForeignKeys(Map<String, SchemaTable> schemaTables) throws SQLException, IOException {
+    if (isVersion7()) {
+      super.addSchemaForeignKeys(schemaTables);
+      return;
+    }
+    try (Connection conn = DatabasePool.getConnection(settings)) {
+      try (
+          PreparedStatement pstmt = conn.prepareStatement(
+              "SELECT cl.relname, fa.attname, pa.attname"
+                  + " FROM pg_catalog.pg_constraint co"
+                  + "   INNER JOIN pg_catalog.pg_class cl ON co.conrelid = cl.oid"
+                  // Keys have at most INDEX_MAX_KEYS (32) columns
+                  + "   CROSS JOIN generate_series(1, 32) AS s(i)"
+                  + "   INNER JOIN pg_catalog.pg_attribute fa ON fa.attrelid = co.conrelid AND fa.attnum = co.conkey[s.i]"
+                  + "   INNER JOIN pg_catalog.pg_attribute pa ON pa.attrelid = co.confrelid AND pa.attnum = co.confkey[s.i]"
+                  + " WHERE co.contype = 'f'"
+                  + "   AND s.i <= array_upper(co.conkey, 1)"
+                  + " ORDER BY cl.relname, co.conname, s.i"
+          );
+          ResultSet r = pstmt.executeQuery()
+          ) {
+        while (r.next()) {
+          String table = r.getString(1);
+          SchemaTable schemaTable = schemaTables.get(table);
+          if (schemaTable != null) {
+            schemaTable.getRow(r.getString(3)).addForeignKey(table, r.getString(2));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Uses <code>pg_class.reltuples</code>, as updated by <code>VACUUM</code> and <code>ANALYZE</code>.
+   * Tables never analyzed use <code>pg_stat_user_tables.n_live_tup</code> instead.
+   */
+  @Override
+  public Map<String, Long> getEstimatedRecordCounts() throws SQLException, IOException {
+    boolean hasLiveTuples = isVersionAtLeast(8, 3);
+    try (Connection conn = DatabasePool.getConnection(settings)) {
+      try (
+          PreparedStatement pstmt = conn.prepareStatement(
+              "SELECT c.relname, c.reltuples, " + (hasLiveTuples ? "s.n_live_tup" : "NULL")
+                  + " FROM pg_catalog.pg_class c"
+                  + "   INNER JOIN pg_catalog.pg_namespace n ON c.relnamespace = n.oid"
+                  + (hasLiveTuples ? "   LEFT JOIN pg_catalog.pg_stat_user_tables s ON s.relid = c.oid" : "")
+                  + " WHERE c.relkind = 'r'"
+                  + "   AND n.nspname NOT IN ('pg_catalog', 'information_schema')"
+          );
+          ResultSet r = pstmt.executeQuery()
+          ) {
+        Map<String, Long> estimates = new HashMap<>();
+        while (r.next()) {
+          long estimate = r.getLong(2);
+          if (estimate < 0) {
+            // Never analyzed
+            estimate = r.getLong(3);
+            if (r.wasNull()) {
+              continue;
+            }
+          }
+          estimates.merge(r.getString(1), estimate, Math::max);
+        }
+        return estimates;
+      }
+    }
+  }
+
   /**
    * Adds a new CHECK constraint to this table.
    */
@@ -71,6 +191,7 @@ public class PostgresqlConnector extends JdbcConnector {
   @Override
   public void addIndex(String indexName, String column) throws SQLException, IOException {
     executeUpdate("CREATE INDEX " + indexName + " ON " + quoteTable(getSettings().getTable()) + " (" + quoteColumn(column) + ')');
+    invalidateMetadata();
   }
 
   /**
@@ -92,6 +213,7 @@ public class PostgresqlConnector extends JdbcConnector {
   @Override
   public void addUniqueIndex(String indexName, String column) throws SQLException, IOException {
     executeUpdate("CREATE UNIQUE INDEX " + indexName + " ON " + quoteTable(getSettings().getTable()) + " (" + quoteColumn(column) + ')');
+    invalidateMetadata();
   }
 
   @Override
@@ -157,6 +279,7 @@ public class PostgresqlConnector extends JdbcConnector {
         addIndex(newColumn[i], newColumn[i]);
       }
     }
+    invalidateAllMetadata();
   }
 
   /**
@@ -214,6 +337,7 @@ public class PostgresqlConnector extends JdbcConnector {
   public void dropIndex(String indexName) throws SQLException, IOException {
     // TODO: Quote this and lots more uses of names
     executeUpdate("DROP INDEX " + indexName);
+    invalidateMetadata();
   }
 
   /**
@@ -269,19 +393,18 @@ public class PostgresqlConnector extends JdbcConnector {
       }
     }
     executeUpdate(sql.toString());
+    invalidateAllMetadata();
   }
 
   @Override
-  public CheckConstraints getCheckConstraints() throws SQLException, IOException {
-    String table = getSettings().getTable();
+  protected CheckConstraints loadCheckConstraints(String table) throws SQLException, IOException {
     List<String> names = new ArrayList<>();
     List<String> checkClauses = new ArrayList<>();
+    boolean version7 = isVersion7();
     try (Connection conn = DatabasePool.getConnection(getSettings())) {
-      DatabaseMetaData metaData = conn.getMetaData();
-      String version = metaData.getDatabaseProductVersion();
       try (Statement stmt = conn.createStatement()) {
         ResultSet r;
-        if (version.startsWith("7.")) {
+        if (version7) {
           r = stmt.executeQuery(
               "SELECT\n"
                   + "  rcname,\n"
@@ -322,7 +445,7 @@ public class PostgresqlConnector extends JdbcConnector {
   }
 
   @Override
-  protected Columns getColumns(String table) throws SQLException, IOException {
+  protected Columns loadColumns(String table) throws SQLException, IOException {
     List<String> names = new ArrayList<>();
     List<String> types = new ArrayList<>();
     List<String> lengths = new ArrayList<>();
@@ -343,10 +466,11 @@ public class PostgresqlConnector extends JdbcConnector {
                 : Boolean.UNKNOWN
         );
         String rem = r.getString(12);
-        remarks.add((rem != null) ? rem : "");
+        // the "no remarks" is the default.
+        remarks.add((rem != null && !"no remarks".equals(rem)) ? rem : "");
       }
     }
-    List<String> defaults = getDefaults(names);
+    List<String> defaults = getDefaults(table, names);
     return new Columns(names, types, lengths, areNullable, defaults, remarks);
   }
 
@@ -358,45 +482,42 @@ public class PostgresqlConnector extends JdbcConnector {
   private String getConstraintName(String column) throws SQLException, IOException {
     String table = getSettings().getTable();
 
-    try (Connection conn = DatabasePool.getConnection(getSettings())) {
-      DatabaseMetaData metaData = conn.getMetaData();
-      String version = metaData.getDatabaseProductVersion();
-      if (version.startsWith("7.")) {
-        try (
-            Statement stmt = conn.createStatement();
-            ResultSet r = stmt.executeQuery("select tgargs from pg_trigger")
-            ) {
-          while (r.next()) {
-            String s = r.getString(1);
-            int pos = s.indexOf("\\000");
-            if (pos > -1) {
-              String constraintName = s.substring(0, pos);
-              int pos2 = s.indexOf("\\000", pos + 4);
-              String localTable = s.substring(pos + 4, pos2);
-              if (table.equals(localTable)) {
-                pos = s.indexOf("\\000", pos2 + 4);
-                pos2 = s.indexOf("\\000", pos + 4);
-                pos = s.indexOf("\\000", pos2 + 4);
-                String localColumn = s.substring(pos2 + 4, pos);
-                if (localColumn.equals(column)) {
-                  return constraintName;
-                }
+    if (isVersion7()) {
+      try (
+          Connection conn = DatabasePool.getConnection(getSettings());
+          Statement stmt = conn.createStatement();
+          ResultSet r = stmt.executeQuery("select tgargs from pg_trigger")
+          ) {
+        while (r.next()) {
+          String s = r.getString(1);
+          int pos = s.indexOf("\\000");
+          if (pos > -1) {
+            String constraintName = s.substring(0, pos);
+            int pos2 = s.indexOf("\\000", pos + 4);
+            String localTable = s.substring(pos + 4, pos2);
+            if (table.equals(localTable)) {
+              pos = s.indexOf("\\000", pos2 + 4);
+              pos2 = s.indexOf("\\000", pos + 4);
+              pos = s.indexOf("\\000", pos2 + 4);
+              String localColumn = s.substring(pos2 + 4, pos);
+              if (localColumn.equals(column)) {
+                return constraintName;
               }
             }
           }
-          return null;
         }
-      } else {
-        ForeignKeys foreignKeys = getForeignKeys(table, true);
-        if (foreignKeys != null) {
-          for (int c = 0; c < foreignKeys.getSize(); c++) {
-            if (column.equals(foreignKeys.getForeignKey(c))) {
-              return foreignKeys.getConstraintName(c);
-            }
+        return null;
+      }
+    } else {
+      ForeignKeys foreignKeys = getForeignKeys(table, true);
+      if (foreignKeys != null) {
+        for (int c = 0; c < foreignKeys.getSize(); c++) {
+          if (column.equals(foreignKeys.getForeignKey(c))) {
+            return foreignKeys.getConstraintName(c);
           }
         }
-        return null;
       }
+      return null;
     }
   }
 
@@ -415,19 +536,18 @@ public class PostgresqlConnector extends JdbcConnector {
    *          start with a {@code 'V'} and a function will start
    *          with a {@code 'F'}.
    */
-  private List<String> getDefaults(List<String> columns) throws SQLException, IOException {
+  private List<String> getDefaults(String table, List<String> columns) throws SQLException, IOException {
     // Fetch the value from the database, release the connection, then
     // parse to obtain the result.  This minimizes the amount of time
     // the database resource is locked.
 
     List<String> defaults = new ArrayList<>();
     List<String> colNames = new ArrayList<>();
+    boolean version7 = isVersion7();
     try (Connection conn = DatabasePool.getConnection(getSettings())) {
-      DatabaseMetaData metaData = conn.getMetaData();
-      String version = metaData.getDatabaseProductVersion();
       try (
           PreparedStatement pstmt = conn.prepareStatement(
-              "SELECT " + (version.startsWith("7.") ? "d.adsrc" : "pg_get_expr(d.adbin, d.adrelid)") + ", a.attname"
+              "SELECT " + (version7 ? "d.adsrc" : "pg_get_expr(d.adbin, d.adrelid)") + ", a.attname"
                   + " FROM pg_attrdef d, pg_class c, pg_attribute a"
                   + " WHERE c.relname = ?"
                   + "   AND c.oid = d.adrelid"
@@ -437,7 +557,7 @@ public class PostgresqlConnector extends JdbcConnector {
                   + " ORDER BY a.attnum"
           )
           ) {
-        pstmt.setString(1, getSettings().getTable());
+        pstmt.setString(1, table);
         try (ResultSet results = pstmt.executeQuery()) {
           while (results.next()) {
             defaults.add(results.getString(1));
@@ -537,6 +657,11 @@ public class PostgresqlConnector extends JdbcConnector {
    */
   public String getDeleteRule(String constraint) throws SQLException, IOException {
     String table = getSettings().getTable();
+    if (!isVersion7()) {
+      ForeignKeys foreignKeys = getImportedKeys();
+      int id = getConstraintId(foreignKeys, constraint);
+      return id == -1 ? "" : foreignKeys.getDeleteRules().get(id);
+    }
 
     try (
         Connection conn = DatabasePool.getConnection(getSettings());
@@ -570,123 +695,114 @@ public class PostgresqlConnector extends JdbcConnector {
    */
   public String getForeignKey(String constraint) throws SQLException, IOException {
     String table = getSettings().getTable();
-    try (Connection conn = DatabasePool.getConnection(getSettings())) {
-      DatabaseMetaData metaData = conn.getMetaData();
-      String version = metaData.getDatabaseProductVersion();
-      if (version.startsWith("7.")) {
-        try (
-            Statement stmt = conn.createStatement();
-            ResultSet r = stmt.executeQuery("select tgargs from pg_trigger")
-            ) {
-          while (r.next()) {
-            String s = r.getString(1);
-            int pos = s.indexOf("\\000");
-            if (pos > -1) {
-              String tmp = s.substring(0, pos);
-              if (constraint.equals(tmp)) {
-                int pos2 = s.indexOf("\\000", pos + 1);
-                if (pos2 > -1) {
-                  if (table.equals(s.substring(pos + 4, pos2))) {
-                    pos = s.indexOf("\\000", pos2 + 1);
-                    String foreignTable = "";
-                    if (pos > -1) {
-                      foreignTable = s.substring(pos2 + 4, pos);
-                      pos = s.indexOf("\\000", pos + 1);
-                    }
-                    if (pos > -1) {
-                      pos = s.indexOf("\\000", pos + 1);
-                    }
-                    if (pos > -1) {
-                      pos2 = s.indexOf("\\000", pos + 1);
-                      if (pos2 > -1) {
-                        return foreignTable + "." + s.substring(pos + 4, pos2);
-                      }
+    if (isVersion7()) {
+      try (
+          Connection conn = DatabasePool.getConnection(getSettings());
+          Statement stmt = conn.createStatement();
+          ResultSet r = stmt.executeQuery("select tgargs from pg_trigger")
+          ) {
+        while (r.next()) {
+          String s = r.getString(1);
+          int pos = s.indexOf("\\000");
+          if (pos > -1) {
+            String tmp = s.substring(0, pos);
+            if (constraint.equals(tmp)) {
+              int pos2 = s.indexOf("\\000", pos + 1);
+              if (pos2 > -1) {
+                if (table.equals(s.substring(pos + 4, pos2))) {
+                  pos = s.indexOf("\\000", pos2 + 1);
+                  String foreignTable = "";
+                  if (pos > -1) {
+                    foreignTable = s.substring(pos2 + 4, pos);
+                    pos = s.indexOf("\\000", pos + 1);
+                  }
+                  if (pos > -1) {
+                    pos = s.indexOf("\\000", pos + 1);
+                  }
+                  if (pos > -1) {
+                    pos2 = s.indexOf("\\000", pos + 1);
+                    if (pos2 > -1) {
+                      return foreignTable + "." + s.substring(pos + 4, pos2);
                     }
                   }
                 }
               }
             }
           }
-          return "";
-        }
-      } else {
-        ForeignKeys foreignKeys = getForeignKeys(table, true);
-        for (int c = 0; c < foreignKeys.getSize(); c++) {
-          if (constraint.equals(foreignKeys.getConstraintName(c))) {
-            return foreignKeys.getPrimaryTable(c) + "." + foreignKeys.getPrimaryKey(c);
-          }
         }
         return "";
       }
+    } else {
+      ForeignKeys foreignKeys = getForeignKeys(table, true);
+      int id = getConstraintId(foreignKeys, constraint);
+      return id == -1 ? "" : foreignKeys.getPrimaryTable(id) + "." + foreignKeys.getPrimaryKey(id);
     }
   }
 
   /**
    * Gets the foreign key data for the current table.
+   * Filters the keys of the whole database, except on PostgreSQL 7 where the triggers are searched.
    *
    * @param isImported only get the imported keys?
    */
   @Override
-  protected ForeignKeys getForeignKeys(String table, boolean isImported) throws SQLException, IOException {
-    try (Connection conn = DatabasePool.getConnection(getSettings())) {
-      List<String> foreignKeys = new ArrayList<>();
-      List<String> foreignTables = new ArrayList<>();
-      List<String> primaryKeys = new ArrayList<>();
-      List<String> primaryTables = new ArrayList<>();
-      List<String> constraintNames = new ArrayList<>();
-      List<String> insertRules = new ArrayList<>();
-      List<String> deleteRules = new ArrayList<>();
-      List<String> updateRules = new ArrayList<>();
-      List<Boolean> isDeferrable = new ArrayList<>();
-      List<Boolean> isInitiallyDeferred = new ArrayList<>();
-
-      DatabaseMetaData metaData = conn.getMetaData();
-      String version = metaData.getDatabaseProductVersion();
-      if (version.startsWith("7.")) {
-        try (
-            Statement stmt = conn.createStatement();
-            ResultSet r = stmt.executeQuery(
-                "SELECT tgargs, "
-                    + "CASE WHEN proname LIKE 'RI_FKey_%' "
-                    + "THEN substring(proname from 9 for (char_length(proname)-12)) END, "
-                    + "tgdeferrable, tginitdeferred "
-                    + "FROM pg_proc, pg_trigger WHERE tgfoid = pg_proc.oid ORDER BY tgname"
-            )
-            ) {
-          while (r.next()) {
-            String s = r.getString(1);
-            int pos = s.indexOf("\\000");
-            if (pos > -1) {
-              String constraintName = s.substring(0, pos);
-              int pos2 = s.indexOf("\\000", pos + 1);
-              if (pos2 > -1) {
-                String primaryTable = s.substring(pos + 4, pos2);
-                if (!isImported || table.equals(primaryTable)) {
-                  pos = s.indexOf("\\000", pos2 + 1);
-                  if (pos > -1) {
-                    String foreignTable = s.substring(pos2 + 4, pos);
-                    if (isImported || table.equals(foreignTable)) {
-                      pos = s.indexOf("\\000", pos + 1);
-                      if (pos > -1) {
-                        pos2 = s.indexOf("\\000", pos + 1);
-                        if (pos2 > -1) {
-                          String primaryKey = s.substring(pos + 4, pos2);
-                          pos = s.indexOf("\\000", pos2 + 1);
-                          if (pos > -1) {
-                            constraintNames.add(constraintName);
-                            foreignTables.add(foreignTable);
-                            primaryTables.add(primaryTable);
-                            primaryKeys.add(primaryKey);
-                            foreignKeys.add(s.substring(pos2 + 4, pos));
-                            isDeferrable.add(r.getBoolean(3) ? Boolean.TRUE : Boolean.FALSE);
-                            isInitiallyDeferred.add(r.getBoolean(4) ? Boolean.TRUE : Boolean.FALSE);
-                            insertRules.add(r.getString(2));
-                            if (r.next()) {
-                              deleteRules.add(r.getString(2));
-                            }
-                            if (r.next()) {
-                              updateRules.add(r.getString(2));
-                            }
+  protected ForeignKeys loadForeignKeys(String table, boolean isImported) throws SQLException, IOException {
+    List<String> foreignKeys = new ArrayList<>();
+    List<String> foreignTables = new ArrayList<>();
+    List<String> primaryKeys = new ArrayList<>();
+    List<String> primaryTables = new ArrayList<>();
+    List<String> constraintNames = new ArrayList<>();
+    List<String> insertRules = new ArrayList<>();
+    List<String> deleteRules = new ArrayList<>();
+    List<String> updateRules = new ArrayList<>();
+    List<Boolean> isDeferrable = new ArrayList<>();
+    List<Boolean> isInitiallyDeferred = new ArrayList<>();
+
+    if (isVersion7()) {
+      try (
+          Connection conn = DatabasePool.getConnection(getSettings());
+          Statement stmt = conn.createStatement();
+          ResultSet r = stmt.executeQuery(
+              "SELECT tgargs, "
+                  + "CASE WHEN proname LIKE 'RI_FKey_%' "
+                  + "THEN substring(proname from 9 for (char_length(proname)-12)) END, "
+                  + "tgdeferrable, tginitdeferred "
+                  + "FROM pg_proc, pg_trigger WHERE tgfoid = pg_proc.oid ORDER BY tgname"
+          )
+          ) {
+        while (r.next()) {
+          String s = r.getString(1);
+          int pos = s.indexOf("\\000");
+          if (pos > -1) {
+            String constraintName = s.substring(0, pos);
+            int pos2 = s.indexOf("\\000", pos + 1);
+            if (pos2 > -1) {
+              String primaryTable = s.substring(pos + 4, pos2);
+              if (!isImported || table.equals(primaryTable)) {
+                pos = s.indexOf("\\000", pos2 + 1);
+                if (pos > -1) {
+                  String foreignTable = s.substring(pos2 + 4, pos);
+                  if (isImported || table.equals(foreignTable)) {
+                    pos = s.indexOf("\\000", pos + 1);
+                    if (pos > -1) {
+                      pos2 = s.indexOf("\\000", pos + 1);
+                      if (pos2 > -1) {
+                        String primaryKey = s.substring(pos + 4, pos2);
+                        pos = s.indexOf("\\000", pos2 + 1);
+                        if (pos > -1) {
+                          constraintNames.add(constraintName);
+                          foreignTables.add(foreignTable);
+                          primaryTables.add(primaryTable);
+                          primaryKeys.add(primaryKey);
+                          foreignKeys.add(s.substring(pos2 + 4, pos));
+                          isDeferrable.add(r.getBoolean(3) ? Boolean.TRUE : Boolean.FALSE);
+                          isInitiallyDeferred.add(r.getBoolean(4) ? Boolean.TRUE : Boolean.FALSE);
+                          insertRules.add(r.getString(2));
+                          if (r.next()) {
+                            deleteRules.add(r.getString(2));
+                          }
+                          if (r.next()) {
+                            updateRules.add(r.getString(2));
                           }
                         }
                       }
@@ -697,109 +813,135 @@ public class PostgresqlConnector extends JdbcConnector {
             }
           }
         }
-      } else {
-        List<Long> foreignTableOids = new ArrayList<>();
-        List<List<Short>> foreignKeyAttNums = new ArrayList<>();
-        List<Long> primaryTableOids = new ArrayList<>();
-        List<List<Short>> primaryKeyAttNums = new ArrayList<>();
-        try (
-            PreparedStatement pstmt = conn.prepareStatement(
-                "SELECT\n"
-                    + "  co.conname,\n"
-                    + "  ft.oid as primary_table_oid,\n"
-                    + "  ft.relname as primary_table,\n"
-                    + "  co.confkey,\n"
-                    + "  cl.oid as foreign_table_oid,\n"
-                    + "  cl.relname as foreign_table,\n"
-                    + "  co.conkey,\n"
-                    + "  co.confmatchtype as insert_rule,\n"
-                    + "  co.confdeltype as delete_rule,\n"
-                    + "  co.confupdtype as update_rule,\n"
-                    + "  co.condeferrable,\n"
-                    + "  co.condeferred\n"
-                    + "FROM\n"
-                    + "  pg_catalog.pg_class cl\n"
-                    + "  inner join pg_catalog.pg_constraint co on cl.oid=co.conrelid\n"
-                    + "  inner join pg_class ft on co.confrelid=ft.oid\n"
-                    + "WHERE\n"
-                    + "  " + (isImported ? "cl" : "ft") + ".relname=?\n"
-                    + "  and co.contype='f'\n"
-                    + "ORDER BY\n"
-                    + "  cl.relname,\n"
-                    + "  co.conname"
-            )
-            ) {
-          pstmt.setString(1, table);
-          try (ResultSet results = pstmt.executeQuery()) {
-            while (results.next()) {
-              constraintNames.add(results.getString("conname"));
-              // Foreign keys
-              foreignTableOids.add(results.getLong("foreign_table_oid"));
-              foreignKeyAttNums.add(Arrays.asList((Short[]) results.getArray("conkey").getArray()));
-              foreignTables.add(results.getString("foreign_table"));
-              // Primary keys
-              primaryTableOids.add(results.getLong("primary_table_oid"));
-              primaryKeyAttNums.add(Arrays.asList((Short[]) results.getArray("confkey").getArray()));
-              primaryTables.add(results.getString("primary_table"));
-              // Rules and the rest
-              insertRules.add(getMatchRule(results.getString("insert_rule")));
-              deleteRules.add(getActionRule(results.getString("delete_rule")));
-              updateRules.add(getActionRule(results.getString("update_rule")));
-              isDeferrable.add(results.getBoolean("condeferrable") ? Boolean.TRUE : Boolean.FALSE);
-              isInitiallyDeferred.add(results.getBoolean("condeferred") ? Boolean.TRUE : Boolean.FALSE);
-            }
-          }
-        }
-        for (int c = 0; c < foreignKeyAttNums.size(); c++) {
-          // Foreign keys
-          List<Short> foreignKeyAttNum = foreignKeyAttNums.get(c);
-          if (foreignKeyAttNum.size() != 1) {
+      }
+    } else {
+      for (ForeignKeyConstraint constraint : getDatabaseForeignKeys()) {
+        if (table.equals(isImported ? constraint.foreignTable : constraint.primaryTable)) {
+          if (constraint.columns != 1) {
             throw new SQLException("Only single-column foreign keys currently supported");
           }
-          foreignKeys.add(getColumnName(conn, foreignTableOids.get(c), foreignKeyAttNum.get(0)));
-          // Primary keys
-          List<Short> primaryKeyAttNum = primaryKeyAttNums.get(c);
-          if (primaryKeyAttNum.size() != 1) {
-            throw new SQLException("Only single-column primary keys currently supported");
-          }
-          primaryKeys.add(getColumnName(conn, primaryTableOids.get(c), primaryKeyAttNum.get(0)));
+          constraintNames.add(constraint.name);
+          foreignKeys.add(constraint.foreignKey);
+          foreignTables.add(constraint.foreignTable);
+          primaryKeys.add(constraint.primaryKey);
+          primaryTables.add(constraint.primaryTable);
+          insertRules.add(constraint.insertRule);
+          deleteRules.add(constraint.deleteRule);
+          updateRules.add(constraint.updateRule);
+          isDeferrable.add(constraint.isDeferrable);
+          isInitiallyDeferred.add(constraint.isInitiallyDeferred);
         }
       }
-      int size = constraintNames.size();
-      if (size < 1) {
-        return null;
-      } else {
-        return new ForeignKeys(
-            constraintNames,
-            foreignKeys,
-            foreignTables,
-            primaryKeys,
-            primaryTables,
-            insertRules,
-            deleteRules,
-            updateRules,
-            isDeferrable,
-            isInitiallyDeferred
-        );
-      }
+    }
+    int size = constraintNames.size();
+    if (size < 1) {
+      return null;
+    } else {
+      return new ForeignKeys(
+          constraintNames,
+          foreignKeys,
+          foreignTables,
+          primaryKeys,
+          primaryTables,
+          insertRules,
+          deleteRules,
+          updateRules,
+          isDeferrable,
+          isInitiallyDeferred
+      );
     }
   }
 
-  private static String getColumnName(Connection conn, long tableOid, int attNum) throws SQLException {
-    try (PreparedStatement pstmt = conn.prepareStatement("SELECT attname FROM pg_catalog.pg_attribute WHERE attrelid=? AND attnum=?")) {
-      pstmt.setLong(1, tableOid);
-      pstmt.setInt(2, attNum);
-      try (ResultSet result = pstmt.executeQuery()) {
-        if (!result.next()) {
-          throw new SQLException("No row returned"); // TODO: NoRowException move to ao-sql
+  /**
+   * A foreign key constraint of the database.
+   */
+  private static final class ForeignKeyConstraint {
+
+    private final String name;
+    private final String foreignTable;
+    private final String foreignKey;
+    private final String primaryTable;
+    private final String primaryKey;
+    private final int columns;
+    private final String insertRule;
+    private final String deleteRule;
+    private final String updateRule;
+    private final Boolean isDeferrable;
+    private final Boolean isInitiallyDeferred;
+
+    private ForeignKeyConstraint(ResultSet results) throws SQLException {
+      name = results.getString("conname");
+      foreignTable = results.getString("foreign_table");
+      foreignKey = results.getString("foreign_key");
+      primaryTable = results.getString("primary_table");
+      primaryKey = results.getString("primary_key");
+      columns = results.getInt("columns");
+      insertRule = getMatchRule(results.getString("insert_rule"));
+      deleteRule = getActionRule(results.getString("delete_rule"));
+      updateRule = getActionRule(results.getString("update_rule"));
+      isDeferrable = results.getBoolean("condeferrable") ? Boolean.TRUE : Boolean.FALSE;
+      isInitiallyDeferred = results.getBoolean("condeferred") ? Boolean.TRUE : Boolean.FALSE;
+    }
+  }
+
+  /**
+   * Gets the foreign key constraints of all tables from one query on <code>pg_constraint</code>,
+   * cached until any table is altered.  Multi-column keys are named by their first columns.
+   */
+  private List<ForeignKeyConstraint> getDatabaseForeignKeys() throws SQLException, IOException {
+    return DatabasePool.getMetadataCache(settings).getDatabase("allForeignKeys", () -> {
+      try (
+          Connection conn = DatabasePool.getConnection(getSettings());
+          PreparedStatement pstmt = conn.prepareStatement(
+              "SELECT\n"
+                  + "  co.conname,\n"
+                  + "  cl.relname as foreign_table,\n"
+                  + "  fa.attname as foreign_key,\n"
+                  + "  ft.relname as primary_table,\n"
+                  + "  pa.attname as primary_key,\n"
+                  + "  array_upper(co.conkey, 1) as columns,\n"
+                  + "  co.confmatchtype as insert_rule,\n"
+                  + "  co.confdeltype as delete_rule,\n"
+                  + "  co.confupdtype as update_rule,\n"
+                  + "  co.condeferrable,\n"
+                  + "  co.condeferred\n"
+                  + "FROM\n"
+                  + "  pg_catalog.pg_constraint co\n"
+                  + "  inner join pg_catalog.pg_class cl on co.conrelid=cl.oid\n"
+                  + "  inner join pg_catalog.pg_class ft on co.confrelid=ft.oid\n"
+                  + "  inner join pg_catalog.pg_attribute fa on fa.attrelid=co.conrelid and fa.attnum=co.conkey[1]\n"
+                  + "  inner join pg_catalog.pg_attribute pa on pa.attrelid=co.confrelid and pa.attnum=co.confkey[1]\n"
+                  + "WHERE\n"
+                  + "  co.contype='f'\n"
+                  + "ORDER BY\n"
+                  + "  cl.relname,\n"
+                  + "  co.conname"
+          );
+          ResultSet results = pstmt.executeQuery()
+          ) {
+        List<ForeignKeyConstraint> constraints = new ArrayList<>();
+        while (results.next()) {
+          constraints.add(new ForeignKeyConstraint(results));
         }
-        String name = result.getString(1);
-        if (result.next()) {
-          throw new SQLException("More than one row returned"); // TODO: ExtraRowException move to ao-sql
+        return Collections.unmodifiableList(constraints);
+      }
+    });
+  }
+
+  /**
+   * Finds a constraint in the foreign keys.
+   *
+   * @return  the index of the constraint or -1 when not found
+   */
+  private static int getConstraintId(ForeignKeys foreignKeys, String constraint) {
+    if (foreignKeys != null) {
+      for (int c = 0; c < foreignKeys.getSize(); c++) {
+        if (constraint.equals(foreignKeys.getConstraintName(c))) {
+          return c;
         }
-        return name;
       }
     }
+    return -1;
   }
 
   /**
@@ -854,7 +996,7 @@ public class PostgresqlConnector extends JdbcConnector {
    * Gets a list of all the unique SQL functions supported by this database.
    */
   @Override
-  public List<String> getFunctionList() throws SQLException, IOException {
+  protected List<String> loadFunctionList() throws SQLException, IOException {
     return executeListQuery("SELECT p.proname as Function FROM pg_proc p, pg_type t WHERE"
         + " p.prorettype = t.oid"
         + " and (pronargs = 0 or oidvectortypes(p.proargtypes) != '')"
@@ -865,7 +1007,7 @@ public class PostgresqlConnector extends JdbcConnector {
    * Gets the functions that may return the provided type.
    */
   @Override
-  public List<String> getFunctionList(String type) throws SQLException, IOException {
+  protected List<String> loadFunctionList(String type) throws SQLException, IOException {
     return executeListQuery("SELECT p.proname as Function FROM pg_proc p, pg_type t WHERE"
         + " p.prorettype = t.oid"
         + " and t.typname=lower(?)"
@@ -877,7 +1019,7 @@ public class PostgresqlConnector extends JdbcConnector {
    * Gets a list of indexes for the selected table.
    */
   @Override
-  public Indexes getIndexes() throws SQLException, IOException {
+  protected Indexes loadIndexes(String table) throws SQLException, IOException {
     List<String> names = new ArrayList<>();
     List<String> columns = new ArrayList<>();
     List<Boolean> areUnique = new ArrayList<>();
@@ -895,7 +1037,7 @@ public class PostgresqlConnector extends JdbcConnector {
                 // TODO: This case-insensitive UPPER is probably not correct now that we have quoted tables
                 + "   AND UPPER(bc.relname)=UPPER('"
                 // TODO: PreparedStatement
-                + getSettings().getTable() + "')"
+                + table + "')"
                 + "   AND i.indrelid = bc.oid"
                 + "   AND i.indexrelid = ic.oid"
                 + "   AND ic.oid = a.attrelid"
@@ -921,6 +1063,11 @@ public class PostgresqlConnector extends JdbcConnector {
    */
   public String getInsertRule(String constraint) throws SQLException, IOException {
     String table = getSettings().getTable();
+    if (!isVersion7()) {
+      ForeignKeys foreignKeys = getImportedKeys();
+      int id = getConstraintId(foreignKeys, constraint);
+      return id == -1 ? "" : foreignKeys.getInsertRules().get(id);
+    }
 
     try (
         Connection conn = DatabasePool.getConnection(getSettings());
@@ -978,6 +1125,23 @@ public class PostgresqlConnector extends JdbcConnector {
     return unmodifiablePrivileges;
   }
 
+  /**
+   * Searches the triggers on PostgreSQL 7, which has no foreign key constraints in the catalog.
+   */
+  @Override
+  public String[] getReferencedColumn(String column) throws SQLException, IOException {
+    if (isVersion7()) {
+      String constraint = getConstraintName(column);
+      if (constraint == null) {
+        return null;
+      }
+      String key = getForeignKey(constraint);
+      int pos = key.indexOf('.');
+      return new String[]{key.substring(0, pos), key.substring(pos + 1)};
+    }
+    return super.getReferencedColumn(column);
+  }
+
   /**
    * Gets the possible values for the specified column name if it references a foreign key.
    *
@@ -989,64 +1153,59 @@ public class PostgresqlConnector extends JdbcConnector {
     // Do not search if the settings are less than 1
     int fkeyrows = getSettings().getForeignKeyRows();
     if (fkeyrows > 0) {
-      // Performing other database operations before allocating a Connection
-      // avoids possible deadlock
-      String constraint = getConstraintName(column);
-      if (constraint != null) {
-        // Keep the use of Connections serial
-        String key = getForeignKey(constraint);
-        int pos = key.indexOf('.');
-        String keyColumn = key.substring(pos + 1);
-        String keyTable = key.substring(0, pos);
-
-        // Only return entries if less than or equal to fkeyrows possibilities
-        int count = getIntQuery("SELECT COUNT(*) FROM " + quoteTable(keyTable));
-        if (count <= fkeyrows) {
-          StringBuilder sql = new StringBuilder("SELECT ")
-              .append(quoteColumn(keyColumn))
-              .append(" FROM ")
-              .append(quoteTable(keyTable));
-          Indexes indexes = getIndexes();
-          List<String> names = indexes.getNames();
-          List<String> columns = indexes.getColumns();
-          List<Boolean> areUnique = indexes.areUnique();
-          int size = columns.size();
-          boolean isMultiple = false;
-          for (int i = 0; i < size; i++) {
-            if (column.equals(columns.get(i))) {
-              if (areUnique.get(i) == Boolean.TRUE) {
-                // Check that this is not part of a multiple column unique clause
-                for (int n = 0; n < size; n++) {
-                  if (n != i && names.get(i).equals(names.get(n))) {
-                    isMultiple = true;
-                    n = size;
-                  }
-                }
-                if (!isMultiple) {
-                  sql
-                      .append(" WHERE (SELECT COUNT(*) FROM ")
-                      .append(quoteTable(settings.getTable()))
-                      .append(" WHERE ")
-                      .append(quoteTable(keyTable))
-                      .append('.')
-                      .append(quoteColumn(keyColumn))
-                      .append('=')
-                      .append(quoteTable(settings.getTable()))
-                      .append('.')
-                      .append(quoteColumn(column))
-                      .append(")=0");
+      String[] key = getReferencedColumn(column);
+      if (key != null) {
+        String keyTable = key[0];
+        String keyColumn = key[1];
+        StringBuilder sql = new StringBuilder("SELECT k.")
+            .append(quoteColumn(keyColumn))
+            .append(" FROM ")
+            .append(quoteTable(keyTable))
+            .append(" k");
+        Indexes indexes = getIndexes();
+        List<String> names = indexes.getNames();
+        List<String> columns = indexes.getColumns();
+        List<Boolean> areUnique = indexes.areUnique();
+        int size = columns.size();
+        boolean isMultiple = false;
+        for (int i = 0; i < size; i++) {
+          if (column.equals(columns.get(i))) {
+            if (areUnique.get(i) == Boolean.TRUE) {
+              // Check that this is not part of a multiple column unique clause
+              for (int n = 0; n < size; n++) {
+                if (n != i && names.get(i).equals(names.get(n))) {
+                  isMultiple = true;
+                  n = size;
                 }
               }
-              break;
+              if (!isMultiple) {
+                // Only the values not already used
+                sql
+                    .append(" LEFT JOIN ")
+                    .append(quoteTable(settings.getTable()))
+                    .append(" t ON t.")
+                    .append(quoteColumn(column))
+                    .append("=k.")
+                    .append(quoteColumn(keyColumn))
+                    .append(" WHERE t.")
+                    .append(quoteColumn(column))
+                    .append(" IS NULL");
+              }
             }
+            break;
           }
-          sql.append(" ORDER BY ").append(quoteColumn(keyColumn));
-
-          // Return all the values, sorted
-          List<String> v = executeListQuery(sql.toString());
-          if (!v.isEmpty()) {
-            return v;
-          }
+        }
+        // Only return entries if less than or equal to fkeyrows possibilities, fetching one extra to know
+        sql
+            .append(" ORDER BY k.")
+            .append(quoteColumn(keyColumn))
+            .append(" LIMIT ")
+            .append(fkeyrows + 1);
+
+        // Return all the values, sorted
+        List<String> v = executeListQuery(sql.toString());
+        if (!v.isEmpty() && v.size() <= fkeyrows) {
+          return v;
         }
       }
     }
@@ -1068,6 +1227,11 @@ public class PostgresqlConnector extends JdbcConnector {
   @Override
   public String getPrimaryKey(String constraint) throws SQLException, IOException {
     String table = getSettings().getTable();
+    if (!isVersion7()) {
+      ForeignKeys foreignKeys = getImportedKeys();
+      int id = getConstraintId(foreignKeys, constraint);
+      return id == -1 ? "" : table + "." + foreignKeys.getForeignKey(id);
+    }
 
     try (
         Connection conn = DatabasePool.getConnection(getSettings());
@@ -1102,20 +1266,6 @@ public class PostgresqlConnector extends JdbcConnector {
     }
   }
 
-  /**
-   * Gets the remark for the specified column.
-   *
-   * @param column the name of the column.
-   *
-   * @return the remark or {@code null} for none.
-   */
-  @Override
-  public String getRemark(String column) throws SQLException, IOException {
-    String r = super.getRemark(column);
-    // the "no remarks" is the default.
-    return "no remarks".equals(r) ? null : r;
-  }
-
   @Override
   @SuppressWarnings("AssignmentToForLoopParameter")
   public TablePrivileges getTablePrivileges() throws SQLException, IOException {
@@ -1253,7 +1403,7 @@ public class PostgresqlConnector extends JdbcConnector {
    * Gets a list of types supported by the database.
    */
   @Override
-  public List<String> getTypes() throws SQLException, IOException {
+  protected List<String> loadTypes() throws SQLException, IOException {
     return executeListQuery(
         "("
             + "SELECT typname "
@@ -1275,6 +1425,11 @@ public class PostgresqlConnector extends JdbcConnector {
    */
   public String getUpdateRule(String constraint) throws SQLException, IOException {
     String table = getSettings().getTable();
+    if (!isVersion7()) {
+      ForeignKeys foreignKeys = getImportedKeys();
+      int id = getConstraintId(foreignKeys, constraint);
+      return id == -1 ? "" : foreignKeys.getUpdateRules().get(id);
+    }
 
     try (
         Connection conn = DatabasePool.getConnection(getSettings());
@@ -1308,6 +1463,11 @@ public class PostgresqlConnector extends JdbcConnector {
    */
   public Boolean isDeferrable(String constraint) throws SQLException, IOException {
     String table = getSettings().getTable();
+    if (!isVersion7()) {
+      ForeignKeys foreignKeys = getImportedKeys();
+      int id = getConstraintId(foreignKeys, constraint);
+      return id == -1 ? Boolean.UNKNOWN : foreignKeys.areDeferrable().get(id);
+    }
 
     try (
         Connection conn = DatabasePool.getConnection(getSettings());
@@ -1341,6 +1501,11 @@ public class PostgresqlConnector extends JdbcConnector {
    */
   public Boolean isInitiallyDeferred(String constraint) throws SQLException, IOException {
     String table = getSettings().getTable();
+    if (!isVersion7()) {
+      ForeignKeys foreignKeys = getImportedKeys();
+      int id = getConstraintId(foreignKeys, constraint);
+      return id == -1 ? Boolean.UNKNOWN : foreignKeys.areInitiallyDeferred().get(id);
+    }
 
     try (
         Connection conn = DatabasePool.getConnection(getSettings());
@@ -1476,6 +1641,52 @@ public class PostgresqlConnector extends JdbcConnector {
     }
   }
 
+  /**
+   * Gets the process ID of the backend, for <code>pg_cancel_backend</code> since PostgreSQL version 8.
+   * Only queried once per physical connection.
+   */
+  @Override
+  protected Object getBackendId(Connection conn) throws SQLException, IOException {
+    if (!isVersionAtLeast(8, 0)) {
+      return null;
+    }
+    return DatabasePool.getBackendId(conn, () -> {
+      try (
+          PreparedStatement pstmt = conn.prepareStatement("SELECT pg_backend_pid()");
+          ResultSet results = pstmt.executeQuery()
+          ) {
+        return results.next() ? results.getInt(1) : null;
+      }
+    });
+  }
+
+  /**
+   * Cancels the statement with <code>pg_cancel_backend</code>, which only cancels
+   * the backends of the same user unless a superuser.
+   */
+  @Override
+  protected boolean cancelBackend(Object backendId) throws SQLException, IOException {
+    try (
+        Connection conn = DatabasePool.getConnection(settings);
+        PreparedStatement pstmt = conn.prepareStatement("SELECT pg_cancel_backend(?)")
+        ) {
+      pstmt.setInt(1, (Integer) backendId);
+      try (ResultSet results = pstmt.executeQuery()) {
+        return results.next() && results.getBoolean(1);
+      }
+    }
+  }
+
+  /**
+   * Casts the parameter to the type of the column, as required since PostgreSQL version 8.
+   */
+  @Override
+  protected String getValueParameter(String table, String column) throws SQLException, IOException {
+    Columns columns = getColumns(table);
+    int id = columns.getId(column);
+    return id == -1 ? "?" : ("?::" + quoteType(getCastType(columns.getType(id))));
+  }
+
   /**
    * Gets a converted type to be used for casts.
    */
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2019, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2019, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -27,6 +27,7 @@
 
 package com.javaphilia.javatator;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -45,8 +46,8 @@ public class PrimaryKeys {
   private final List<String> names;
 
   public PrimaryKeys(List<String> columns, List<String> names) {
-    this.columns = columns;
-    this.names = names;
+    this.columns = Collections.unmodifiableList(columns);
+    this.names = Collections.unmodifiableList(names);
   }
 
   /**
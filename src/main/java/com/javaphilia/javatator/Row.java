@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2019, 2020, 2021, 2022, 2024, 2025  AO Industries, Inc.
+ * Copyright (C) 2019, 2020, 2021, 2022, 2024, 2025, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -328,6 +328,7 @@ public class Row {
       List<String> lengths = columns.getLengths();
       List<JdbcConnector.Boolean> areNullable = columns.areNullable();
       // List<String> defaults=columns.getDefaults();
+      boolean lookupForeignKeys = isForeignKeyLookup();
       int size = names.size();
       for (int i = 0; i < size; i++) {
         final String columnName = names.get(i);
@@ -350,7 +351,8 @@ public class Row {
 
         out.startTd();
         // Don't show the the functions if all possible values are displayed
-        List<String> pvalues = conn.getPossibleValues(columnName, columnType);
+        final boolean lookup = lookupForeignKeys && conn.getReferencedColumn(columnName) != null;
+        List<String> pvalues = lookup ? null : conn.getPossibleValues(columnName, columnType);
         if (pvalues == null) {
           List<String> functions = conn.getFunctionList(conn.getEffectiveType(columnType));
           final int fsize = functions.size();
@@ -444,7 +446,11 @@ public class Row {
               out.print(" maxlength=");
               out.print(columnLength);
             }
-            out.print('>');
+            if (lookup) {
+              printForeignKeyLookup(out, i, columnName);
+            } else {
+              out.print('>');
+            }
           }
           if (isNullable == JdbcConnector.Boolean.TRUE) {
             out.print("<input type='checkbox' name='null");
@@ -471,6 +477,26 @@ public class Row {
     return settings;
   }
 
+  /**
+   * Foreign key values are looked-up as they are typed instead of listing them all.
+   */
+  private boolean isForeignKeyLookup() {
+    return Boolean.TRUE.equals(settings.getDatabaseConfiguration().getBooleanProperty("fkey.lookup", settings.getDatabaseProduct()));
+  }
+
+  /**
+   * Ends a text input with the attributes to look-up the values of a foreign key, followed by the list filled as typed.
+   */
+  private static void printForeignKeyLookup(JavatatorWriter out, int i, String columnName) {
+    out.print(" list='fkvalues");
+    out.print(i);
+    out.print("' autocomplete='off' oninput=\"lookupForeignKey(this, '");
+    Util.printEscapedJavaScript(out, columnName);
+    out.print("');\"><datalist id='fkvalues");
+    out.print(i);
+    out.print("'></datalist>");
+  }
+
   /**
    * Prints a screen for inserting a row.
    */
@@ -506,6 +532,7 @@ public class Row {
     out.endTr();
 
     JdbcConnector conn = settings.getJdbcConnector();
+    boolean lookupForeignKeys = isForeignKeyLookup();
 
     Columns columns = conn.getColumns();
     List<String> names = columns.getNames();
@@ -536,7 +563,8 @@ public class Row {
       out.startTd();
 
       // Do not show the functions if all possible values are listed and the default is not a function
-      List<String> values = conn.getPossibleValues(columnName, columnType);
+      final boolean lookup = lookupForeignKeys && conn.getReferencedColumn(columnName) != null;
+      List<String> values = lookup ? null : conn.getPossibleValues(columnName, columnType);
       if (values == null || (columnDefault != null && columnDefault.charAt(0) == 'F')) {
         out.print("<select name='function");
         out.print(i);
@@ -632,7 +660,11 @@ public class Row {
             out.print(" maxlength=");
             out.print(columnLength);
           }
-          out.print('>');
+          if (lookup) {
+            printForeignKeyLookup(out, i, columnName);
+          } else {
+            out.print('>');
+          }
         }
         if (isNullable == JdbcConnector.Boolean.TRUE) {
           out.print("<input type='checkbox' name='null");
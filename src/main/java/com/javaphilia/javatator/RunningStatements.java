@@ -0,0 +1,197 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The statements currently running, by the ID of the request running them, so a long-running
+ * statement may be canceled from the browser while its page is still loading.
+ */
+final class RunningStatements {
+
+  private RunningStatements() {
+  }
+
+  private static final String REQUEST_ID_ATTRIBUTE = RunningStatements.class.getName() + ".requestId";
+
+  private static final SecureRandom random = new SecureRandom();
+
+  /**
+   * The statements currently running for each request.
+   */
+  private static final ConcurrentMap<String, Set<Running>> running = new ConcurrentHashMap<>();
+
+  /**
+   * A statement registered while it runs, until {@link #end()}.
+   */
+  static final class Running {
+
+    private final String requestId;
+    private final Settings settings;
+    private final Statement stmt;
+    private final Object backendId;
+
+    private Running(String requestId, Settings settings, Statement stmt, Object backendId) {
+      this.requestId = requestId;
+      this.settings = settings;
+      this.stmt = stmt;
+      this.backendId = backendId;
+    }
+
+    /**
+     * Only the same user of the same database, with the same password, may cancel the statement.
+     * The request ID alone is not enough, since it is shown in the page.
+     */
+    private boolean isSameDatabase(Settings other) {
+      return Objects.equals(settings.getDatabaseProduct(), other.getDatabaseProduct())
+          && Objects.equals(settings.getHostname(), other.getHostname())
+          && settings.getPort() == other.getPort()
+          && Objects.equals(settings.getUsername(), other.getUsername())
+          && Objects.equals(settings.getDatabase(), other.getDatabase())
+          && MessageDigest.isEqual(getPasswordBytes(settings), getPasswordBytes(other));
+    }
+
+    /**
+     * Removes the statement from the registry once it has finished.
+     */
+    void end() {
+      if (requestId != null) {
+        running.computeIfPresent(requestId, (id, statements) -> {
+          statements.remove(this);
+          return statements.isEmpty() ? null : statements;
+        });
+      }
+    }
+  }
+
+  private static byte[] getPasswordBytes(Settings settings) {
+    String password = settings.getPassword();
+    return (password == null ? "" : password).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the ID of the request, the same for all the statements it runs.
+   */
+  static String getRequestId(HttpServletRequest request) {
+    String requestId = (String) request.getAttribute(REQUEST_ID_ATTRIBUTE);
+    if (requestId == null) {
+      byte[] bytes = new byte[16];
+      random.nextBytes(bytes);
+      StringBuilder sb = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      requestId = sb.toString();
+      request.setAttribute(REQUEST_ID_ATTRIBUTE, requestId);
+    }
+    return requestId;
+  }
+
+  /**
+   * Sets the timeout of a statement about to be executed and registers it until {@link Running#end()}.
+   * Statements run outside of a request, such as by {@link TableTasks}, are not registered.
+   *
+   * @see  Settings#getQueryTimeout()
+   */
+  static Running start(Settings settings, Connection conn, Statement stmt) throws SQLException, IOException {
+    stmt.setQueryTimeout(settings.getQueryTimeout());
+    HttpServletRequest request = settings.getRequest();
+    if (request == null) {
+      return new Running(null, settings, stmt, null);
+    }
+    String requestId = getRequestId(request);
+    Running statement = new Running(requestId, settings, stmt, settings.getJdbcConnector().getBackendId(conn));
+    running.computeIfAbsent(requestId, id -> ConcurrentHashMap.newKeySet()).add(statement);
+    return statement;
+  }
+
+  /**
+   * Cancels the statements running for a request.  When the driver cannot cancel a statement,
+   * the server is asked to cancel it by the ID of its connection, when supported.
+   *
+   * @param  settings  the settings of the request canceling, which must be for the same user, password and database
+   *
+   * @return  {@code true} when a statement was canceled
+   */
+  static boolean cancel(String requestId, Settings settings) throws SQLException, IOException {
+    Set<Running> statements = running.get(requestId);
+    if (statements == null) {
+      return false;
+    }
+    boolean canceled = false;
+    for (Running statement : statements) {
+      if (statement.isSameDatabase(settings)) {
+        try {
+          statement.stmt.cancel();
+          canceled = true;
+        } catch (SQLException e) {
+          if (statement.backendId == null) {
+            throw e;
+          }
+          if (settings.getJdbcConnector().cancelBackend(statement.backendId)) {
+            canceled = true;
+          }
+        }
+      }
+    }
+    return canceled;
+  }
+
+  /**
+   * Prints a button to cancel the statements of the request, removed by {@link #printCancelDone}.
+   * The output is flushed so the button is shown while the statements run.
+   */
+  static void printCancel(JavatatorWriter out, Settings settings) {
+    String requestId = getRequestId(settings.getRequest());
+    out.print("<span id='cancel_");
+    out.print(requestId);
+    out.print("'><input type=button value='Cancel query' onClick=\"cancelStatement(this, '");
+    out.print(requestId);
+    out.print("');\"><br></span>\n");
+    out.flush();
+  }
+
+  /**
+   * Removes the button printed by {@link #printCancel}.
+   */
+  static void printCancelDone(JavatatorWriter out, Settings settings) {
+    out.print("<script language=javascript><!--\n"
+        + "document.getElementById('cancel_");
+    out.print(getRequestId(settings.getRequest()));
+    out.print("').style.display='none';\n"
+        + "//--></script>\n");
+  }
+}
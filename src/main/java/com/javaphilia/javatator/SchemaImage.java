@@ -4,7 +4,7 @@
  * Copyright (C) 2001  Dan Armstrong.
  *     dan@dans-home.com
  *
- * Copyright (C) 2015, 2019, 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2015, 2019, 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -143,6 +143,12 @@ public class SchemaImage extends HttpServlet {
       tables = settings.getJdbcConnector().getDatabaseSchema();
     } catch (SQLException e) {
       throw new ServletException(e);
+    } finally {
+      try {
+        DatabasePool.releaseRequestConnections(req);
+      } catch (SQLException e) {
+        throw new ServletException(e);
+      }
     }
     int len = tables.size();
 
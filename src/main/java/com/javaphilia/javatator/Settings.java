@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2018, 2019, 2020, 2021, 2022  AO Industries, Inc.
+ * Copyright (C) 2018, 2019, 2020, 2021, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -62,6 +62,7 @@ public class Settings {
   private int numrows = 30;
   private int fkeyrows = 100;
   private boolean useMultiLine = true;
+  private int querytimeout = -1;
 
   private String error;
 
@@ -152,6 +153,10 @@ public class Settings {
       fkeyrows = Integer.parseInt(s);
     }
     useMultiLine = Boolean.parseBoolean(request.getParameter("usemultiline"));
+    s = request.getParameter("querytimeout");
+    if (s != null && s.length() > 0) {
+      querytimeout = Integer.parseInt(s);
+    }
   }
 
   private Settings(
@@ -172,7 +177,8 @@ public class Settings {
       String sortOrder,
       int numrows,
       int fkeyrows,
-      boolean useMultiLine
+      boolean useMultiLine,
+      int querytimeout
   ) {
     this.servletContext = servletContext;
     this.request = request;
@@ -192,6 +198,7 @@ public class Settings {
     this.numrows = numrows;
     this.fkeyrows = fkeyrows;
     this.useMultiLine = useMultiLine;
+    this.querytimeout = querytimeout;
   }
 
   public ServletContext getServletContext() {
@@ -310,6 +317,29 @@ public class Settings {
     return numrows;
   }
 
+  /**
+   * Gets the timeout of the statements run, in seconds, zero for none.
+   * The timeout chosen by the client is used up to <code>query.timeout.max</code>,
+   * otherwise the <code>query.timeout</code> of the database product.
+   */
+  public int getQueryTimeout() {
+    String config = databaseConfiguration.getProperty("query.timeout", databaseProduct);
+    int timeout = (config == null || config.isEmpty()) ? 0 : Integer.parseInt(config);
+    if (querytimeout >= 0) {
+      config = databaseConfiguration.getProperty("query.timeout.max", databaseProduct);
+      int max = (config == null || config.isEmpty()) ? 0 : Integer.parseInt(config);
+      timeout = (max == 0) ? querytimeout : (querytimeout == 0) ? max : Math.min(querytimeout, max);
+    }
+    return timeout;
+  }
+
+  /**
+   * Gets the timeout chosen by the client, in seconds, or -1 for the default.
+   */
+  public int getRequestedQueryTimeout() {
+    return querytimeout;
+  }
+
   /**
    * Gets an arbitrary value from the request.  The is the value
    * as provided by the client.  Any overridden configuration
@@ -491,6 +521,7 @@ public class Settings {
     printHiddenField(out, "numrows", numrows);
     printHiddenField(out, "fkeyrows", fkeyrows);
     printHiddenField(out, "usemultiline", Boolean.toString(useMultiLine));
+    printHiddenField(out, "querytimeout", querytimeout == -1 ? "" : Integer.toString(querytimeout));
   }
 
   /**
@@ -577,6 +608,8 @@ public class Settings {
     printParam(out, "fkeyrows", fkeyrows);
     out.print('&');
     printParam(out, "usemultiline", Boolean.toString(useMultiLine));
+    out.print('&');
+    printParam(out, "querytimeout", querytimeout == -1 ? "" : Integer.toString(querytimeout));
   }
 
   /**
@@ -601,7 +634,8 @@ public class Settings {
         sortOrder,
         numrows,
         fkeyrows,
-        useMultiLine
+        useMultiLine,
+        querytimeout
     );
   }
 
@@ -627,7 +661,37 @@ public class Settings {
         sortOrder,
         numrows,
         fkeyrows,
-        useMultiLine
+        useMultiLine,
+        querytimeout
+    );
+  }
+
+  /**
+   * Gets a {@link Settings} associated with a different request.  With a {@code null} request,
+   * connections are no longer shared for the request and may be used from other threads, but
+   * the request parameters are not available.
+   */
+  public Settings setRequest(HttpServletRequest request) {
+    return new Settings(
+        servletContext,
+        request,
+        databaseConfiguration,
+        databaseProduct,
+        hostname,
+        port,
+        ssl,
+        username,
+        password,
+        database,
+        table,
+        column,
+        action,
+        sortColumn,
+        sortOrder,
+        numrows,
+        fkeyrows,
+        useMultiLine,
+        querytimeout
     );
   }
 
@@ -0,0 +1,329 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps a physical {@link Connection}, keeping the most recently used {@link PreparedStatement prepared statements}
+ * open for reuse.  Statements are keyed by their SQL, and only those prepared by
+ * {@link Connection#prepareStatement(java.lang.String)} are cached.  Closing a statement returns it to
+ * the cache, and closing the connection closes all cached statements.
+ *
+ * <p>A statement is only reused while idle; preparing the same SQL again while the first is still
+ * open creates another statement.  The query timeout, maximum rows and fetch size are restored
+ * when the statement is returned, and statements whose other settings were changed, such as
+ * {@link PreparedStatement#setEscapeProcessing(boolean)}, are closed instead of cached.</p>
+ *
+ * <p>Statements prepared before a change to the schema may no longer match the tables.  Incrementing
+ * the shared generation discards them, by the thread using each connection the next time it prepares
+ * or returns a statement.</p>
+ */
+final class StatementCache implements InvocationHandler {
+
+  /**
+   * Wraps a physical connection with a statement cache.
+   *
+   * @param capacity  the maximum idle statements kept, zero returns the connection unwrapped
+   * @param generation  incremented to discard the statements prepared before
+   */
+  static Connection wrap(Connection conn, int capacity, AtomicInteger generation, LongAdder hits, LongAdder misses) {
+    if (capacity <= 0) {
+      return conn;
+    }
+    return (Connection) Proxy.newProxyInstance(
+        StatementCache.class.getClassLoader(),
+        new Class<?>[]{Connection.class},
+        new StatementCache(conn, capacity, generation, hits, misses)
+    );
+  }
+
+  private final Connection conn;
+
+  private final AtomicInteger generation;
+
+  /**
+   * The {@link #generation} of the idle statements.
+   */
+  private int idleGeneration;
+
+  private final LongAdder hits;
+
+  private final LongAdder misses;
+
+  /**
+   * The idle statements, in least recently used order.
+   */
+  private final Map<String, PreparedStatement> idle;
+
+  private StatementCache(Connection conn, int capacity, AtomicInteger generation, LongAdder hits, LongAdder misses) {
+    this.conn = conn;
+    this.generation = generation;
+    this.idleGeneration = generation.get();
+    this.hits = hits;
+    this.misses = misses;
+    this.idle = new LinkedHashMap<String, PreparedStatement>(capacity * 4 / 3 + 1, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+        if (size() > capacity) {
+          closeQuietly(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String name = method.getName();
+    if ("prepareStatement".equals(name) && args.length == 1 && args[0] instanceof String) {
+      return prepareStatement((String) args[0]);
+    }
+    if ("close".equals(name) && (args == null || args.length == 0)) {
+      clear();
+    }
+    try {
+      return method.invoke(conn, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private PreparedStatement prepareStatement(String sql) throws SQLException {
+    int current = generation.get();
+    PreparedStatement pstmt;
+    synchronized (idle) {
+      if (idleGeneration != current) {
+        clear();
+        idleGeneration = current;
+      }
+      pstmt = idle.remove(sql);
+    }
+    if (pstmt != null && !pstmt.isClosed()) {
+      hits.increment();
+    } else {
+      misses.increment();
+      pstmt = conn.prepareStatement(sql);
+    }
+    return (PreparedStatement) Proxy.newProxyInstance(
+        StatementCache.class.getClassLoader(),
+        new Class<?>[]{PreparedStatement.class},
+        new CachedStatement(sql, pstmt, current)
+    );
+  }
+
+  /**
+   * Closes all idle statements.
+   */
+  private void clear() {
+    List<PreparedStatement> closing;
+    synchronized (idle) {
+      closing = new ArrayList<>(idle.values());
+      idle.clear();
+    }
+    for (PreparedStatement pstmt : closing) {
+      closeQuietly(pstmt);
+    }
+  }
+
+  private static void closeQuietly(PreparedStatement pstmt) {
+    try {
+      pstmt.close();
+    } catch (SQLException e) {
+      // Connection is likely closed or broken, nothing to do
+    }
+  }
+
+  /**
+   * Returns the statement to the cache on close.
+   */
+  private class CachedStatement implements InvocationHandler {
+
+    private final String sql;
+
+    private final PreparedStatement pstmt;
+
+    /**
+     * The {@link StatementCache#generation} when prepared.
+     */
+    private final int preparedGeneration;
+
+    private boolean closed;
+
+    /**
+     * Set when a setting that would affect the next user has been changed.
+     */
+    private boolean modified;
+
+    /**
+     * The original values of the settings restored on release, by setter name.
+     */
+    private Map<String, Integer> restore;
+
+    private CachedStatement(String sql, PreparedStatement pstmt, int preparedGeneration) {
+      this.sql = sql;
+      this.pstmt = pstmt;
+      this.preparedGeneration = preparedGeneration;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if ("close".equals(name)) {
+        if (!closed) {
+          closed = true;
+          release();
+        }
+        return null;
+      }
+      if ("isClosed".equals(name)) {
+        return closed || pstmt.isClosed();
+      }
+      if (closed) {
+        throw new SQLException("Statement is closed");
+      }
+      if (isRestoredSetter(name, args)) {
+        if (restore == null) {
+          restore = new HashMap<>();
+        }
+        if (!restore.containsKey(name)) {
+          restore.put(name, getSetting(name));
+        }
+      } else if (name.startsWith("set") && !isParameterSetter(method)) {
+        modified = true;
+      }
+      try {
+        return method.invoke(pstmt, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    /**
+     * Parameter setters are declared by {@link PreparedStatement} itself and take the parameter index first.
+     */
+    private boolean isParameterSetter(Method method) {
+      return
+          method.getDeclaringClass() == PreparedStatement.class
+              && method.getParameterCount() >= 2
+              && method.getParameterTypes()[0] == int.class;
+    }
+
+    /**
+     * The settings commonly changed per use, which are restored instead of preventing reuse.
+     */
+    private boolean isRestoredSetter(String name, Object[] args) {
+      return
+          ("setQueryTimeout".equals(name) || "setMaxRows".equals(name) || "setFetchSize".equals(name))
+              && args != null
+              && args.length == 1
+              && args[0] instanceof Integer;
+    }
+
+    private int getSetting(String setter) throws SQLException {
+      switch (setter) {
+        case "setQueryTimeout":
+          return pstmt.getQueryTimeout();
+        case "setMaxRows":
+          return pstmt.getMaxRows();
+        case "setFetchSize":
+          return pstmt.getFetchSize();
+        default:
+          throw new AssertionError(setter);
+      }
+    }
+
+    private void setSetting(String setter, int value) throws SQLException {
+      switch (setter) {
+        case "setQueryTimeout":
+          pstmt.setQueryTimeout(value);
+          break;
+        case "setMaxRows":
+          pstmt.setMaxRows(value);
+          break;
+        case "setFetchSize":
+          pstmt.setFetchSize(value);
+          break;
+        default:
+          throw new AssertionError(setter);
+      }
+    }
+
+    private void release() throws SQLException {
+      boolean reuse = false;
+      try {
+        if (
+            !modified
+                && preparedGeneration == generation.get()
+                && !pstmt.isClosed()
+                && !conn.isClosed()
+        ) {
+          ResultSet results = pstmt.getResultSet();
+          if (results != null) {
+            results.close();
+          }
+          pstmt.clearParameters();
+          pstmt.clearWarnings();
+          if (restore != null) {
+            for (Map.Entry<String, Integer> entry : restore.entrySet()) {
+              setSetting(entry.getKey(), entry.getValue());
+            }
+          }
+          reuse = true;
+        }
+      } finally {
+        if (reuse) {
+          PreparedStatement existing;
+          synchronized (idle) {
+            existing = idle.putIfAbsent(sql, pstmt);
+          }
+          if (existing != null) {
+            // Another copy is already cached
+            pstmt.close();
+          }
+        } else {
+          pstmt.close();
+        }
+      }
+    }
+  }
+}
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2009, 2018, 2019, 2020, 2021, 2022, 2023, 2024, 2025  AO Industries, Inc.
+ * Copyright (C) 2009, 2018, 2019, 2020, 2021, 2022, 2023, 2024, 2025, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -29,13 +29,21 @@ package com.javaphilia.javatator;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Methods to view and manipulate database tables.
@@ -342,11 +350,32 @@ public class Table {
       conn.dumpTableStructure(html);
     }
     if (settings.getParameter("data") != null) {
-      conn.dumpTableContents(html);
+      RunningStatements.printCancel(out, settings);
+      try {
+        conn.dumpTableContents(html);
+      } finally {
+        RunningStatements.printCancelDone(out, settings);
+      }
     }
     return printTableProperties(out);
   }
 
+  /**
+   * Shows the exact number of records in the table, for tables with only an estimate on the database details.
+   */
+  public Settings countRecords(JavatatorWriter out) throws SQLException, IOException {
+    out.print("<h2>Database ");
+    out.print(settings.getDatabase());
+    out.print(" : table ");
+    out.print(settings.getTable());
+    out.print("</h2>\n"
+        + "Records: ");
+    out.print(settings.getJdbcConnector().countRecords());
+    out.print("<br><br>\n"
+        + "<a href=\"javascript:selectAction('db_details');\">Back to database</a>");
+    return settings;
+  }
+
   /**
    * Empties the current table and shows a success message. Shows the details of the current database.
    */
@@ -361,6 +390,79 @@ public class Table {
     return new Database(settings).printDatabaseDetails(out);
   }
 
+  /**
+   * The types, other than character types, whose values compare the same when sent to the
+   * server as text.
+   */
+  private static final Set<String> SEEKABLE_TYPES = new HashSet<>(Arrays.asList(
+      "TINYINT", "SMALLINT", "MEDIUMINT", "INT", "INTEGER", "BIGINT",
+      "INT2", "INT4", "INT8",
+      "SMALLSERIAL", "SERIAL", "BIGSERIAL", "SERIAL2", "SERIAL4", "SERIAL8",
+      "CHARACTER", "CHARACTER VARYING", "NAME", "UUID"
+  ));
+
+  /**
+   * Checks if the keys of a type may be sought by their text: integer and character types.
+   * Floating-point, decimal and date-time keys could lose precision or compare as text.
+   */
+  private static boolean isSeekableType(String type) {
+    if (type == null) {
+      return false;
+    }
+    type = type.toUpperCase(Locale.ROOT);
+    if (type.endsWith(" UNSIGNED")) {
+      type = type.substring(0, type.length() - " UNSIGNED".length());
+    }
+    return type.endsWith("CHAR") || type.endsWith("TEXT") || SEEKABLE_TYPES.contains(type);
+  }
+
+  /**
+   * Gets the column the rows are browsed in order of, when its values identify the rows:
+   * the sort column when it is the primary key or has a unique index and no nulls,
+   * otherwise a single-column primary key when not sorted.  Only columns of
+   * {@linkplain #isSeekableType(java.lang.String) integer or character types} are used.
+   *
+   * @return  the column or {@code null} when pages must skip rows instead
+   */
+  private String getSeekColumn(JdbcConnector conn) throws SQLException, IOException {
+    String sortColumn = settings.getSortColumn();
+    List<String> primaryKeys = conn.getPrimaryKeys().getColumns();
+    Columns columns = conn.getColumns();
+    if (sortColumn == null || sortColumn.isEmpty()) {
+      if (primaryKeys.size() != 1) {
+        return null;
+      }
+      int id = columns.getId(primaryKeys.get(0));
+      return (id != -1 && isSeekableType(columns.getType(id))) ? primaryKeys.get(0) : null;
+    }
+    int id = columns.getId(sortColumn);
+    if (id == -1 || !isSeekableType(columns.getType(id))) {
+      return null;
+    }
+    if (primaryKeys.size() == 1 && primaryKeys.get(0).equals(sortColumn)) {
+      return sortColumn;
+    }
+    if (columns.isNullable(id) != JdbcConnector.Boolean.FALSE) {
+      return null;
+    }
+    Indexes indexes = conn.getIndexes();
+    if (indexes != null) {
+      List<String> names = indexes.getNames();
+      List<String> indexColumns = indexes.getColumns();
+      List<JdbcConnector.Boolean> areUnique = indexes.areUnique();
+      for (int i = 0; i < names.size(); i++) {
+        if (
+            areUnique.get(i) == JdbcConnector.Boolean.TRUE
+                && sortColumn.equals(indexColumns.get(i))
+                && Collections.frequency(names, names.get(i)) == 1
+        ) {
+          return sortColumn;
+        }
+      }
+    }
+    return null;
+  }
+
   /**
    * Gets the startpos from the current {@link Settings}.
    */
@@ -593,7 +695,10 @@ public class Table {
     return settings;
   }
 
-  private void printPreviousNext(JavatatorWriter out, int startPos, int numrows, int totalRows, int which) {
+  /**
+   * Prints the forms to move to the previous and next pages, seeking from the first or last key shown when possible.
+   */
+  private void printPreviousNext(JavatatorWriter out, int startPos, int numrows, int totalRows, int which, boolean seek) {
     if (startPos > 0) {
       out.print("<b>Previous:</b> <input type='text' size=4 name='pnewnumrows");
       out.print(which);
@@ -607,8 +712,13 @@ public class Table {
       out.print(startPos);
       out.print("-this.form.pnewnumrows");
       out.print(which);
-      out.print(".value);"
-          + " return selectAction('doselect')\">&nbsp;&nbsp;&nbsp;");
+      out.print(".value);");
+      if (seek) {
+        out.print(" setSeek('prev', ");
+        out.print(startPos);
+        out.print(");");
+      }
+      out.print(" return selectAction('doselect')\">&nbsp;&nbsp;&nbsp;");
     }
 
     // Only show the remaining if there are some that are not visible
@@ -626,7 +736,13 @@ public class Table {
     out.print(which);
     out.print(".value); setStartPos(this.form.startpos");
     out.print(which);
-    out.print(".value); return selectAction('doselect');\">");
+    out.print(".value);");
+    if (seek) {
+      out.print(" setSeek('next', ");
+      out.print(startPos + numrows);
+      out.print(");");
+    }
+    out.print(" return selectAction('doselect');\">");
   }
 
   /**
@@ -844,6 +960,7 @@ public class Table {
       List<String> lengths = columns.getLengths();
       List<JdbcConnector.Boolean> areNullable = columns.areNullable();
       List<String> defaults = columns.getDefaults();
+      List<String> remarks = columns.getRemarks();
       int size = names.size();
       for (int i = 0; i < size; i++) {
         final String columnName = names.get(i);
@@ -860,10 +977,8 @@ public class Table {
         } else {
           out.printTd(columnDefault.substring(1));
         }
-        String rem = conn.getRemark(columnName);
-        if (rem == null) {
-          out.printTd("");
-        } else if (rem.length() == 0) {
+        String rem = remarks.get(i);
+        if (rem.length() == 0) {
           out.printTd("&nbsp;");
         } else {
           out.printTd(rem);
@@ -1117,6 +1232,8 @@ public class Table {
       return confirmDeleteTable(out);
     } else if ("dodelete_table".equals(action)) {
       return deleteTable(out);
+    } else if ("count_records".equals(action)) {
+      return countRecords(out);
     } else if ("empty_table".equals(action)) {
       return confirmEmptyTable(out);
     } else if ("doempty_table".equals(action)) {
@@ -1205,10 +1322,29 @@ public class Table {
     String selectCols;                  // The list of all columns that are being selected
     String selectWhere;                 // The settings provided where clause
     String fullQuery;                   // The result of the SQL generation
+    // The single unique column the rows are ordered by, allowing pages to seek past the key of the previous page
+    final String seekColumn = getSeekColumn(conn);
+    String seekKey = null;              // The key to seek past or null to skip rows
+    boolean seekPrevious = false;       // Seeking backwards, the rows are queried in reverse
+    {
+      String seekDir = settings.getParameter("seekdir");
+      String seekPos = settings.getParameter("seekpos");
+      if (seekColumn != null && seekDir != null && seekPos != null && !seekPos.isEmpty()) {
+        int pos = Integer.parseInt(seekPos);
+        if ("next".equals(seekDir) && startPos == pos) {
+          seekKey = settings.getParameter("seekkey");
+        } else if ("prev".equals(seekDir) && startPos + numrows == pos) {
+          seekKey = settings.getParameter("seekkey");
+          seekPrevious = true;
+        }
+      }
+    }
+    // The rows skipped, by the limit clause or while reading the results
+    final int skipRows = (seekKey != null) ? 0 : startPos;
+    final String limitClause = conn.getLimitClause(skipRows, numrows);
     {
       int count = 0;
-      final String limitClause = conn.getLimitClause(startPos, numrows);
-      final String sortColumn = settings.getSortColumn();
+      final String sortColumn = seekColumn != null ? seekColumn : settings.getSortColumn();
 
       while (settings.getParameter("scolumn" + count) != null) {
         count++;
@@ -1261,13 +1397,28 @@ public class Table {
               selectCols
           ).append(" FROM ")
           .append(conn.quoteTable(settings.getTable()));
-      if (selectWhere != null && !"".equals(selectWhere)) {
-        query.append(" WHERE ").append(selectWhere);
+      boolean hasWhere = selectWhere != null && !"".equals(selectWhere);
+      if (hasWhere) {
+        // The filter is free-form, so it is grouped before the seek is added
+        query.append(seekKey != null ? " WHERE (" : " WHERE ").append(selectWhere);
+      }
+      boolean descending = "desc".equalsIgnoreCase(settings.getSortOrder());
+      if (seekKey != null) {
+        query
+            .append(hasWhere ? ") AND " : " WHERE ")
+            .append(conn.quoteColumn(seekColumn))
+            .append(descending != seekPrevious ? " < " : " > ")
+            .append(conn.getValueParameter(settings.getTable(), seekColumn));
       }
 
       // String sortClause = "";
       if (sortColumn != null && !"".equals(sortColumn)) {
-        query.append(" ORDER BY ").append(conn.quoteColumn(sortColumn)).append(' ').append(settings.getSortOrder());
+        query.append(" ORDER BY ").append(conn.quoteColumn(sortColumn));
+        if (seekColumn != null) {
+          query.append(descending != seekPrevious ? " desc" : " asc");
+        } else if (settings.getSortOrder() != null) {
+          query.append(' ').append(settings.getSortOrder());
+        }
       }
       if (limitClause != null) {
         query.append(' ').append(limitClause);
@@ -1299,13 +1450,21 @@ public class Table {
     out.print("'>\n" + "<input type=hidden name='primarykeys'>\n" + "<input type=hidden name='values'>\n" + "<input type=hidden name='startpos' value='");
     out.print(startPos);
     out.print("'>\n");
+    if (seekColumn != null) {
+      out.print("<input type=hidden name='seekdir'>\n"
+          + "<input type=hidden name='seekkey'>\n"
+          + "<input type=hidden name='seekpos'>\n");
+    }
 
     // Print out the previous and next form
-    printPreviousNext(out, startPos, numrows, totalRows, 1);
+    printPreviousNext(out, startPos, numrows, totalRows, 1, seekColumn != null);
     out.print("<br>\n");
     out.print("<a href=\"javascript:selectAction('insert');\">Insert new row</a><br><br>\n");
 
     // Print the table of results
+    String seekFirst = null;
+    String seekLast = null;
+    RunningStatements.printCancel(out, settings);
     out.startTable(null, "cellspacing=1");
     try {
       try (Connection dbcon = DatabasePool.getConnection(settings)) {
@@ -1325,7 +1484,10 @@ public class Table {
         // }
         // The unique IDs of the columns that reference this table
         List<List<Integer>> exportedIds;
-        ForeignKeys exportedKeys = conn.getExportedKeys();
+        boolean exportedCounts = !Boolean.FALSE.equals(
+            settings.getDatabaseConfiguration().getBooleanProperty("exported.counts", settings.getDatabaseProduct())
+        );
+        ForeignKeys exportedKeys = exportedCounts ? conn.getExportedKeys() : null;
         // for (int c=0;c<exportedKeys.getSize();c++) {
         //     System.err.println("exportedKeys: "+exportedKeys.getForeignTable(c)+"."+exportedKeys.getForeignKey(c)+"→"+exportedKeys.getPrimaryTable(c)+"."+exportedKeys.getPrimaryKey(c));
         // }
@@ -1342,83 +1504,132 @@ public class Table {
         // The number of results that are returned
         int resultSize;
 
-        try (
-            Statement stmt = dbcon.createStatement();
-            ResultSet results = stmt.executeQuery(fullQuery)
-            ) {
-          out.startTr();
-          // Compile the meta data about the table and print the table header
-          ResultSetMetaData metaData = results.getMetaData();
-          columnCount = metaData.getColumnCount();
-          importedKeyIds = new ArrayList<>(columnCount);
-          exportedIds = new ArrayList<>(columnCount);
-          columnTypes = new ArrayList<>(columnCount);
-          columnNames = new ArrayList<>(columnCount);
-          resultCopies = new ArrayList<>(columnCount);
-          for (int i = 1; i <= columnCount; i++) {
-            String col = metaData.getColumnName(i);
-            columnTypes.add(metaData.getColumnTypeName(i));
-            columnNames.add(metaData.getColumnName(i));
-            String order = "asc";
-            if (col.equals(settings.getSortColumn()) && "asc".equals(settings.getSortOrder())) {
-              order = "desc";
-            }
-            out.printTh("<A href=\"javascript:setSortColumn('" + Util.escapeJavaScript(col) + "');setSortOrder('" + order + "');selectAction('doselect');\">" + Util.escapeHtml(col) + "</A>");
+        // Only prepared when seeking, since a free-form filter or sort may contain a literal '?'
+        try (Statement stmt = (seekKey == null) ? dbcon.createStatement() : dbcon.prepareStatement(fullQuery)) {
+          if (seekKey != null) {
+            ((PreparedStatement) stmt).setString(1, seekKey);
+          }
+          if (limitClause == null) {
+            // Have the driver stop after the rows shown and fetch them a page at a time
+            stmt.setMaxRows((int) Math.min((long) skipRows + numrows, Integer.MAX_VALUE));
+            stmt.setFetchSize(numrows);
+          }
+          RunningStatements.Running running = RunningStatements.start(settings, dbcon, stmt);
+          try (
+              ResultSet results = (seekKey == null)
+                  ? stmt.executeQuery(fullQuery)
+                  : ((PreparedStatement) stmt).executeQuery()
+              ) {
+            out.startTr();
+            // Compile the meta data about the table and print the table header
+            ResultSetMetaData metaData = results.getMetaData();
+            columnCount = metaData.getColumnCount();
+            importedKeyIds = new ArrayList<>(columnCount);
+            exportedIds = new ArrayList<>(columnCount);
+            columnTypes = new ArrayList<>(columnCount);
+            columnNames = new ArrayList<>(columnCount);
+            resultCopies = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+              String col = metaData.getColumnName(i);
+              columnTypes.add(metaData.getColumnTypeName(i));
+              columnNames.add(metaData.getColumnName(i));
+              String order = "asc";
+              if (col.equals(settings.getSortColumn()) && "asc".equals(settings.getSortOrder())) {
+                order = "desc";
+              }
+              out.printTh("<A href=\"javascript:setSortColumn('" + Util.escapeJavaScript(col) + "');setSortOrder('" + order + "');selectAction('doselect');\">" + Util.escapeHtml(col) + "</A>");
 
-            // Build up the list of primary key columns as we iterate through the columns
-            if (primaryKeyCols.isEmpty() || primaryKeyCols.contains(col)) {
-              if (primaryKeysSb.length() > 0) {
-                primaryKeysSb.append(',');
+              // Build up the list of primary key columns as we iterate through the columns
+              if (primaryKeyCols.isEmpty() || primaryKeyCols.contains(col)) {
+                if (primaryKeysSb.length() > 0) {
+                  primaryKeysSb.append(',');
+                }
+                primaryKeysSb.append(col);
               }
-              primaryKeysSb.append(col);
-            }
 
-            if (importedKeys != null) {
-              importedKeyIds.add(importedKeys.getForeignId(col));
-            } else {
-              importedKeyIds.add(-1);
-            }
-            if (exportedKeys != null) {
-              exportedIds.add(exportedKeys.getForeignIds(col));
-              int exportedIdsSize = exportedIds.get(i - 1).size();
-              if (exportedIdsSize > 0) {
-                for (int c = 0; c < exportedIdsSize; c++) {
-                  List<Integer> ids = exportedIds.get(i - 1);
-                  int z = ids.get(c);
-                  String foreignTable = exportedKeys.getForeignTable(z);
-                  // Also add the column name if this table is referenced more than once
-                  boolean foundOther = false;
-                  for (int d = 0; d < exportedIdsSize; d++) {
-                    if (d != c) {
-                      int y = ids.get(d);
-                      if (foreignTable.equals(exportedKeys.getForeignTable(y))) {
-                        foundOther = true;
-                        break;
+              if (importedKeys != null) {
+                importedKeyIds.add(importedKeys.getForeignId(col));
+              } else {
+                importedKeyIds.add(-1);
+              }
+              if (exportedKeys != null) {
+                exportedIds.add(exportedKeys.getForeignIds(col));
+                int exportedIdsSize = exportedIds.get(i - 1).size();
+                if (exportedIdsSize > 0) {
+                  for (int c = 0; c < exportedIdsSize; c++) {
+                    List<Integer> ids = exportedIds.get(i - 1);
+                    int z = ids.get(c);
+                    String foreignTable = exportedKeys.getForeignTable(z);
+                    // Also add the column name if this table is referenced more than once
+                    boolean foundOther = false;
+                    for (int d = 0; d < exportedIdsSize; d++) {
+                      if (d != c) {
+                        int y = ids.get(d);
+                        if (foreignTable.equals(exportedKeys.getForeignTable(y))) {
+                          foundOther = true;
+                          break;
+                        }
                       }
                     }
-                  }
-                  if (foundOther) {
-                    out.printTh(foreignTable + "<br>." + exportedKeys.getForeignKey(z));
-                  } else {
-                    out.printTh(foreignTable);
+                    if (foundOther) {
+                      out.printTh(foreignTable + "<br>." + exportedKeys.getForeignKey(z));
+                    } else {
+                      out.printTh(foreignTable);
+                    }
                   }
                 }
+              } else {
+                List<Integer> emptyList = Collections.emptyList();
+                exportedIds.add(emptyList);
               }
-            } else {
-              List<Integer> emptyList = Collections.emptyList();
-              exportedIds.add(emptyList);
+              resultCopies.add(new ArrayList<>());
             }
-            resultCopies.add(new ArrayList<>());
+            out.printTh("Options");
+            out.endTr();
+            primaryKeysString = Util.escapeJavaScript(primaryKeysSb.toString());
+            if (limitClause == null) {
+              // Skip the rows before the page on the forward-only cursor
+              for (int skip = skipRows; skip > 0 && results.next(); skip--) {
+                // Skip rows before startPos
+              }
+            }
+            resultSize = 0;
+            while (resultSize < numrows && results.next()) {
+              resultSize++;
+              for (int i = 1; i <= columnCount; i++) {
+                String s = results.getString(i);
+                resultCopies.get(i - 1).add(s);
+              }
+            }
+          } finally {
+            running.end();
           }
-          out.printTh("Options");
-          out.endTr();
-          primaryKeysString = Util.escapeJavaScript(primaryKeysSb.toString());
-          resultSize = 0;
-          while (resultSize < numrows && results.next()) {
-            resultSize++;
-            for (int i = 1; i <= columnCount; i++) {
-              String s = results.getString(i);
-              resultCopies.get(i - 1).add(s);
+        }
+        if (seekPrevious) {
+          for (List<String> resultCopy : resultCopies) {
+            Collections.reverse(resultCopy);
+          }
+        }
+        int seekIndex = (seekColumn == null) ? -1 : columnNames.indexOf(seekColumn);
+        if (seekIndex != -1 && resultSize > 0) {
+          seekFirst = resultCopies.get(seekIndex).get(0);
+          seekLast = resultCopies.get(seekIndex).get(resultSize - 1);
+        }
+
+        // Count the rows referencing the values shown, with one query per exported key
+        Map<Integer, Map<String, Integer>> referenceCounts = new HashMap<>();
+        for (int column = 0; column < columnCount; column++) {
+          List<Integer> ids = exportedIds.get(column);
+          if (!ids.isEmpty()) {
+            assert exportedKeys != null;
+            Set<String> values = new LinkedHashSet<>();
+            for (String value : resultCopies.get(column)) {
+              if (value != null) {
+                values.add(value);
+              }
+            }
+            for (int z : ids) {
+              referenceCounts.put(z, conn.getReferenceCounts(exportedKeys.getForeignTable(z), exportedKeys.getForeignKey(z), values));
             }
           }
         }
@@ -1453,36 +1664,7 @@ public class Table {
               assert exportedKeys != null;
               for (int c = 0; c < exportedIdsSize; c++) {
                 int z = exportedIds.get(column).get(c);
-                String foreignTable = exportedKeys.getForeignTable(z);
-                String foreignKey = exportedKeys.getForeignKey(z);
-
-                int tmp;
-                if (s == null) {
-                  tmp = -1;
-                } else {
-                  // TODO: Could put this into a single query to avoid round-trips
-                  String sql =
-                      "SELECT\n"
-                          + "  COUNT(*)\n"
-                          + "FROM\n"
-                          + "  "
-                          + conn.quoteTable(foreignTable) + "\n"
-                          + "WHERE\n"
-                          + "  " + conn.quoteColumn(foreignKey) + "='" + Util.escapeSql(s) + "'";
-                  try (
-                      Statement stmt2 = dbcon.createStatement();
-                      ResultSet results2 = stmt2.executeQuery(sql)
-                      ) {
-                    if (results2.next()) {
-                      tmp = results2.getInt(1);
-                    } else {
-                      tmp = -1;
-                    }
-                  } catch (SQLException e) {
-                    System.err.println("sql = " + sql);
-                    throw e;
-                  }
-                }
+                int tmp = (s == null) ? -1 : referenceCounts.get(z).getOrDefault(s, 0);
 
                 out.printTd(
                     (tmp > 0) ? "<A href=\"javascript:select('"
@@ -1532,13 +1714,22 @@ public class Table {
       }
     } finally {
       out.endTable();
+      RunningStatements.printCancelDone(out, settings);
+    }
+    if (seekFirst != null) {
+      // The keys of the first and last rows, for the previous and next pages to seek from
+      out.print("<input type=hidden name='seekfirst' value='");
+      Util.printEscapedInputValue(out, seekFirst);
+      out.print("'>\n<input type=hidden name='seeklast' value='");
+      Util.printEscapedInputValue(out, seekLast);
+      out.print("'>\n");
     }
 
     // Print out the bottom insert row link
     out.print("<br>\n" + "<a href=\"javascript:selectAction('insert');\">Insert new row</a><br>\n");
 
     // Print out the bottom previous/next form
-    printPreviousNext(out, startPos, numrows, totalRows, 2);
+    printPreviousNext(out, startPos, numrows, totalRows, 2, seekColumn != null);
 
     return settings;
   }
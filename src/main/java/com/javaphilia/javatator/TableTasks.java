@@ -0,0 +1,210 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Runs the same task on many tables in parallel, such as fetching the metadata or row counts
+ * of every table in a database.  Each {@link DatabasePool} limits the number of extra threads
+ * working on it at once, so browsing a large database cannot use all of its connections.
+ *
+ * <p>The requesting thread always takes part, so the tasks still complete when no extra threads
+ * are available.  Extra threads do not share the connection leased for the request, they check-out
+ * their own connections as needed.</p>
+ */
+@WebListener("Runs the per-table tasks of large databases in parallel.")
+public class TableTasks implements ServletContextListener {
+
+  /**
+   * A task performed on one table.
+   */
+  @FunctionalInterface
+  public interface Task<T> {
+
+    /**
+     * @param settings  the settings for the table, use these and not the settings of the request
+     */
+    T call(Settings settings) throws SQLException, IOException;
+  }
+
+  /**
+   * The time allowed for running tasks to finish on shutdown, in milliseconds.
+   */
+  private static final long SHUTDOWN_TIMEOUT = 10000;
+
+  private static final Object lock = new Object();
+
+  private static ExecutorService executor;
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    synchronized (lock) {
+      if (executor == null) {
+        AtomicInteger threadNum = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(task -> {
+          Thread thread = new Thread(task, "Javatator Table Tasks " + threadNum.incrementAndGet());
+          thread.setPriority(Thread.NORM_PRIORITY);
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    ExecutorService stopping;
+    synchronized (lock) {
+      stopping = executor;
+      executor = null;
+    }
+    if (stopping != null) {
+      stopping.shutdownNow();
+      try {
+        stopping.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+        // Restore the interrupted status
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Runs a task on each table, returning the results in the order of the tables.
+   *
+   * @param settings  the settings of the request, for the database containing the tables
+   */
+  public static <T> List<T> forEachTable(Settings settings, List<String> tables, Task<T> task) throws SQLException, IOException {
+    int size = tables.size();
+    Object[] results = new Object[size];
+    AtomicInteger next = new AtomicInteger();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    List<Future<?>> futures = new ArrayList<>();
+    Semaphore permits = size > 1 ? DatabasePool.getParallelPermits(settings) : null;
+    if (permits != null) {
+      // Extra threads use their own connections
+      Settings detached = settings.setRequest(null);
+      synchronized (lock) {
+        if (executor != null) {
+          int workers = Math.min(permits.availablePermits(), size - 1);
+          for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(() -> {
+              if (permits.tryAcquire()) {
+                try {
+                  runTasks(detached, tables, task, results, next, failure);
+                } finally {
+                  permits.release();
+                }
+              }
+            }));
+          }
+        }
+      }
+    }
+    runTasks(settings, tables, task, results, next, failure);
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      failure.compareAndSet(null, e);
+      next.set(size);
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+      // Restore the interrupted status
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      failure.compareAndSet(null, e.getCause());
+    }
+
+    Throwable t = failure.get();
+    if (t != null) {
+      if (t instanceof SQLException) {
+        throw (SQLException) t;
+      }
+      if (t instanceof IOException) {
+        throw (IOException) t;
+      }
+      if (t instanceof InterruptedException) {
+        InterruptedIOException err = new InterruptedIOException();
+        err.initCause(t);
+        throw err;
+      }
+      if (t instanceof RuntimeException) {
+        throw (RuntimeException) t;
+      }
+      if (t instanceof Error) {
+        throw (Error) t;
+      }
+      throw new IOException(t);
+    }
+    @SuppressWarnings("unchecked")
+    List<T> list = (List<T>) Arrays.asList(results);
+    return list;
+  }
+
+  /**
+   * Takes the next table until all are done or a task has failed.
+   */
+  private static <T> void runTasks(
+      Settings settings,
+      List<String> tables,
+      Task<T> task,
+      Object[] results,
+      AtomicInteger next,
+      AtomicReference<Throwable> failure
+  ) {
+    int size = tables.size();
+    int i;
+    while (failure.get() == null && (i = next.getAndIncrement()) < size) {
+      try {
+        results[i] = task.call(settings.setTable(tables.get(i)));
+      } catch (ThreadDeath td) {
+        throw td;
+      } catch (Throwable t) {
+        failure.compareAndSet(null, t);
+      }
+    }
+  }
+}
@@ -5,7 +5,7 @@
  *     If you want to help or want to report any bugs, please email me:
  *     jason@javaphilia.com
  *
- * Copyright (C) 2019, 2020, 2022  AO Industries, Inc.
+ * Copyright (C) 2019, 2020, 2022, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -107,6 +107,7 @@ function setConstraint(c) {
 function updateSettings(f) {
   var t=top.top_frame.document.theform;
   t.fkeyrows.value=f.newfkeyrows.value;
+  t.querytimeout.value=f.newquerytimeout.value;
   if (f.newusemultiline.checked) t.usemultiline.value="true";
   else t.usemultiline.value="false";
   history.go(-1);
@@ -132,6 +133,12 @@ function showOptions() {
   f.submit();
 }
 
+function showPoolStats() {
+  var f=document.theform;
+  f.action.value="show_pool_stats";
+  f.submit();
+}
+
 function reloadMenu() {
   var f=document.theform;
   f.frame.value="top";
@@ -198,6 +205,15 @@ function setNumRows(num) {
   window.top.top_frame.document.theform.numrows.value=num;
 }
 
+function setSeek(dir, pos) {
+  var f=document.theform;
+  if (f.seeklast) {
+    f.seekdir.value=dir;
+    f.seekkey.value=(dir=="prev") ? f.seekfirst.value : f.seeklast.value;
+    f.seekpos.value=pos;
+  }
+}
+
 function selectAction(action) {
   var f=document.theform;
   f.target="right_frame";
@@ -277,3 +293,54 @@ function printTableSelect(table) {
   }
 }
 
+
+/**
+ * Foreign key look-up
+ */
+
+var fkeyTimer=null;
+
+/**
+ * Fills the list of an input with the values of the foreign key that start with what was typed,
+ * once typing pauses.  Only the first page is shown, typing more narrows the values.
+ */
+function lookupForeignKey(input, column) {
+  if (fkeyTimer!=null) window.clearTimeout(fkeyTimer);
+  fkeyTimer=window.setTimeout(function() {
+    fkeyTimer=null;
+    var prefix=input.value;
+    var data=new FormData(document.theform);
+    data.set("column", column);
+    data.set("prefix", prefix);
+    var request=new XMLHttpRequest();
+    request.open("POST", "fkey-lookup");
+    request.onload=function() {
+      if (request.status!=200 || input.value!=prefix) return;
+      var result=JSON.parse(request.responseText);
+      var list=input.list;
+      while (list.firstChild) list.removeChild(list.firstChild);
+      for (var i=0;i<result.values.length;i++) {
+        var option=document.createElement("option");
+        option.value=result.values[i]==null ? "" : result.values[i];
+        list.appendChild(option);
+      }
+    };
+    request.send(new URLSearchParams(data));
+  }, 250);
+}
+
+function cancelStatement(button, id) {
+  var data=new FormData(top.top_frame.document.theform);
+  data.set("id", id);
+  button.disabled=true;
+  button.value="Canceling...";
+  var request=new XMLHttpRequest();
+  request.open("POST", "cancel-statement");
+  request.onload=function() {
+    if (request.status!=200 || !JSON.parse(request.responseText).canceled) {
+      button.disabled=false;
+      button.value="Cancel query";
+    }
+  };
+  request.send(new URLSearchParams(data));
+}
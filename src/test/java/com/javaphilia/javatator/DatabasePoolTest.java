@@ -0,0 +1,455 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.junit.Test;
+
+/**
+ * Tests checking connections out of a {@link DatabasePool} and returning them.
+ */
+public class DatabasePoolTest {
+
+  private static final String PRODUCT = "pooltest";
+
+  static final String URL_PREFIX = "jdbc:javatator-pooltest:";
+
+  /**
+   * The number of physical connections opened by {@link TestDriver}.
+   */
+  private static final AtomicInteger opened = new AtomicInteger();
+
+  /**
+   * A driver whose connections only remember whether they are closed and their catalog,
+   * and whose prepared statements only remember whether they are closed and their settings.
+   */
+  public static class TestDriver implements Driver {
+
+    /**
+     * The number of statements prepared.
+     */
+    static final AtomicInteger prepared = new AtomicInteger();
+
+    /**
+     * The number of prepared statements closed.
+     */
+    static final AtomicInteger closedStatements = new AtomicInteger();
+
+    static {
+      try {
+        DriverManager.registerDriver(new TestDriver());
+      } catch (SQLException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+      if (!acceptsURL(url)) {
+        return null;
+      }
+      opened.incrementAndGet();
+      boolean[] closed = {false};
+      String[] catalog = {null};
+      return (Connection) Proxy.newProxyInstance(
+          TestDriver.class.getClassLoader(),
+          new Class<?>[]{Connection.class},
+          (proxy, method, args) -> {
+            switch (method.getName()) {
+              case "close":
+                closed[0] = true;
+                return null;
+              case "isClosed":
+                return closed[0];
+              case "isValid":
+                return !closed[0];
+              case "setCatalog":
+                catalog[0] = (String) args[0];
+                return null;
+              case "getCatalog":
+                return catalog[0];
+              case "prepareStatement":
+                return prepareStatement();
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              case "equals":
+                return proxy == args[0];
+              case "toString":
+                return "TestConnection";
+              default:
+                return defaultValue(method);
+            }
+          }
+      );
+    }
+
+    private static PreparedStatement prepareStatement() {
+      prepared.incrementAndGet();
+      boolean[] closed = {false};
+      Map<String, Object> settings = new HashMap<>();
+      return (PreparedStatement) Proxy.newProxyInstance(
+          TestDriver.class.getClassLoader(),
+          new Class<?>[]{PreparedStatement.class},
+          (proxy, method, args) -> {
+            String name = method.getName();
+            switch (name) {
+              case "close":
+                if (!closed[0]) {
+                  closed[0] = true;
+                  closedStatements.incrementAndGet();
+                }
+                return null;
+              case "isClosed":
+                return closed[0];
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              case "equals":
+                return proxy == args[0];
+              case "toString":
+                return "TestStatement";
+              default:
+                if (name.startsWith("set") && args != null && args.length == 1) {
+                  settings.put(name.substring(3), args[0]);
+                  return null;
+                }
+                if (name.startsWith("get") && args == null && settings.containsKey(name.substring(3))) {
+                  return settings.get(name.substring(3));
+                }
+                return defaultValue(method);
+            }
+          }
+      );
+    }
+
+    private static Object defaultValue(Method method) {
+      Class<?> returnType = method.getReturnType();
+      if (returnType == boolean.class) {
+        return false;
+      }
+      if (returnType == int.class) {
+        return 0;
+      }
+      return null;
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+      return url.startsWith(URL_PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+      return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+      return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+      return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+      return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      throw new SQLFeatureNotSupportedException();
+    }
+  }
+
+  /**
+   * Creates a pool of a fixed number of connections, each test using its own host so the
+   * per-host limits and circuit breakers are not shared.
+   */
+  private static DatabasePool newPool(String hostname, int connections) throws IOException {
+    return newPool(hostname, connections, connections, 100);
+  }
+
+  /**
+   * Creates a pool starting at <code>minConnections</code> slots.
+   */
+  private static DatabasePool newPool(String hostname, int connections, int minConnections, long checkoutTimeout) throws IOException {
+    Properties props = new Properties();
+    try (InputStream in = DatabasePoolTest.class.getResourceAsStream("database.properties")) {
+      props.load(in);
+    }
+    props.setProperty("db." + PRODUCT + ".driver", TestDriver.class.getName());
+    props.setProperty("db." + PRODUCT + ".connections", Integer.toString(connections));
+    props.setProperty("db." + PRODUCT + ".connections.min", Integer.toString(minConnections));
+    props.setProperty("db." + PRODUCT + ".checkout.timeout", Long.toString(checkoutTimeout));
+    return DatabasePool.newUnregisteredPool(
+        new DatabaseConfiguration(props),
+        PRODUCT,
+        hostname,
+        1,
+        "user",
+        "password",
+        "database",
+        URL_PREFIX + hostname
+    );
+  }
+
+  @Test
+  public void testCheckoutAndReturn() throws Exception {
+    DatabasePool pool = newPool("checkout", 2);
+    try {
+      int openedBefore = opened.get();
+      Connection first = pool.getConnection0();
+      Connection second = pool.getConnection0();
+      assertEquals(2, pool.getBusyCount());
+      first.close();
+      assertEquals(1, pool.getBusyCount());
+      assertEquals(1, pool.getIdleCount());
+      // The returned connection is reused instead of opening another
+      Connection third = pool.getConnection0();
+      assertEquals(2, opened.get() - openedBefore);
+      second.close();
+      third.close();
+      assertEquals(0, pool.getBusyCount());
+      assertEquals(2, pool.getIdleCount());
+      assertEquals(3, pool.getConnectionUses());
+    } finally {
+      pool.close(true);
+    }
+  }
+
+  @Test
+  public void testBaselineProperties() throws Exception {
+    // A database.properties written before the pool settings were added replaces the bundled one
+    Properties props = new Properties();
+    props.setProperty("db." + PRODUCT + ".name", "Pool Test");
+    props.setProperty("db." + PRODUCT + ".driver", TestDriver.class.getName());
+    props.setProperty("db." + PRODUCT + ".url", URL_PREFIX + "%h");
+    props.setProperty("db.*.connections", "2");
+    props.setProperty("db.*.hostname", "");
+    props.setProperty("db.*.username", "");
+    props.setProperty("db.*.password", "");
+    props.setProperty("db.*.database", "");
+    props.setProperty("db.dbproduct", "");
+    DatabasePool pool = DatabasePool.newUnregisteredPool(
+        new DatabaseConfiguration(props),
+        PRODUCT,
+        "baseline",
+        1,
+        "user",
+        "password",
+        "database",
+        URL_PREFIX + "baseline"
+    );
+    try {
+      Connection first = pool.getConnection0();
+      Connection second = pool.getConnection0();
+      assertEquals(2, pool.getBusyCount());
+      first.close();
+      second.close();
+      assertEquals(0, pool.getBusyCount());
+    } finally {
+      pool.close(true);
+    }
+  }
+
+  @Test
+  public void testTimeoutWhenExhausted() throws Exception {
+    DatabasePool pool = newPool("exhausted", 1);
+    try {
+      Connection conn = pool.getConnection0();
+      try {
+        pool.getConnection0();
+        fail("Checkout should have timed out");
+      } catch (SQLTransientConnectionException e) {
+        // Expected
+      }
+      assertEquals(1, pool.getExhaustedCount());
+      assertEquals(1, pool.getTimeoutCount());
+      conn.close();
+      pool.getConnection0().close();
+    } finally {
+      pool.close(true);
+    }
+  }
+
+  @Test
+  public void testGrowOnCheckout() throws Exception {
+    final int connections = 8;
+    final long checkoutTimeout = 30000;
+    DatabasePool pool = newPool("grow", connections, 1, checkoutTimeout);
+    try {
+      assertEquals(1, pool.getActiveSlots());
+      List<Throwable> errors = new ArrayList<>();
+      CountDownLatch acquired = new CountDownLatch(connections);
+      CountDownLatch release = new CountDownLatch(1);
+      List<Thread> workers = new ArrayList<>(connections);
+      for (int t = 0; t < connections; t++) {
+        Thread worker = new Thread(() -> {
+          try {
+            Connection conn = pool.getConnection0();
+            try {
+              acquired.countDown();
+              release.await();
+            } finally {
+              conn.close();
+            }
+          } catch (Throwable e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        }, "grow" + t);
+        worker.start();
+        workers.add(worker);
+      }
+      // Every checkout is served by a new slot, without waiting for maintenance
+      boolean allAcquired = acquired.await(checkoutTimeout / 10, TimeUnit.MILLISECONDS);
+      release.countDown();
+      for (Thread worker : workers) {
+        worker.join();
+      }
+      if (!errors.isEmpty()) {
+        throw new AssertionError(errors.size() + " workers failed", errors.get(0));
+      }
+      assertTrue(allAcquired);
+      assertEquals(connections, pool.getActiveSlots());
+      assertEquals(0, pool.getTimeoutCount());
+    } finally {
+      pool.close(true);
+    }
+  }
+
+  @Test
+  public void testReturnTwice() throws Exception {
+    DatabasePool pool = newPool("twice", 2);
+    try {
+      Connection conn = pool.getConnection0();
+      conn.close();
+      conn.close();
+      assertEquals(0, pool.getBusyCount());
+      // Returning twice must not make the slot available twice
+      Connection first = pool.getConnection0();
+      Connection second = pool.getConnection0();
+      assertEquals(2, pool.getBusyCount());
+      try {
+        pool.getConnection0();
+        fail("Only two connections should be available");
+      } catch (SQLTransientConnectionException e) {
+        // Expected
+      }
+      first.setCatalog("first");
+      second.setCatalog("second");
+      assertEquals("first", first.getCatalog());
+      first.close();
+      second.close();
+    } finally {
+      pool.close(true);
+    }
+  }
+
+  @Test
+  public void testConcurrentCheckout() throws Exception {
+    final int connections = 4;
+    final int threads = 16;
+    final int iterations = 200;
+    DatabasePool pool = newPool("concurrent", connections);
+    try {
+      int openedBefore = opened.get();
+      List<Throwable> errors = new ArrayList<>();
+      CountDownLatch start = new CountDownLatch(1);
+      List<Thread> workers = new ArrayList<>(threads);
+      for (int t = 0; t < threads; t++) {
+        String name = "worker" + t;
+        Thread worker = new Thread(() -> {
+          try {
+            start.await();
+            for (int i = 0; i < iterations; i++) {
+              Connection conn = null;
+              while (conn == null) {
+                try {
+                  conn = pool.getConnection0();
+                } catch (SQLTransientConnectionException e) {
+                  // Timed out behind the other threads, try again
+                }
+              }
+              try {
+                // No other thread may be using the same physical connection
+                conn.setCatalog(name);
+                Thread.yield();
+                assertEquals(name, conn.getCatalog());
+              } finally {
+                conn.close();
+              }
+            }
+          } catch (Throwable e) {
+            synchronized (errors) {
+              errors.add(e);
+            }
+          }
+        }, name);
+        worker.start();
+        workers.add(worker);
+      }
+      start.countDown();
+      for (Thread worker : workers) {
+        worker.join();
+      }
+      if (!errors.isEmpty()) {
+        throw new AssertionError(errors.size() + " workers failed", errors.get(0));
+      }
+      assertEquals(0, pool.getBusyCount());
+      assertEquals((long) threads * iterations, pool.getConnectionUses());
+      assertTrue(opened.get() - openedBefore <= connections);
+      assertEquals(opened.get() - openedBefore, pool.getIdleCount());
+    } finally {
+      pool.close(true);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.SocketTimeoutException;
+import java.sql.SQLException;
+import java.sql.SQLInvalidAuthorizationSpecException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import org.junit.Test;
+
+/**
+ * Tests which connection errors open the {@link HostCircuitBreaker}.
+ */
+public class HostCircuitBreakerTest {
+
+  @Test
+  public void testHostFailures() {
+    assertTrue(HostCircuitBreaker.isHostFailure(new SQLException("Connection refused", "08001")));
+    assertTrue(HostCircuitBreaker.isHostFailure(new SQLException("Communications link failure", "08S01")));
+    assertTrue(HostCircuitBreaker.isHostFailure(new SQLRecoverableException("Connection reset")));
+    assertTrue(HostCircuitBreaker.isHostFailure(new SQLTimeoutException("Login timed out")));
+    assertTrue(HostCircuitBreaker.isHostFailure(new SQLException("Read timed out", new SocketTimeoutException())));
+  }
+
+  @Test
+  public void testNotHostFailures() {
+    assertFalse(HostCircuitBreaker.isHostFailure(new SQLException("password authentication failed", "28P01")));
+    assertFalse(HostCircuitBreaker.isHostFailure(new SQLInvalidAuthorizationSpecException("Access denied", "28000")));
+    assertFalse(HostCircuitBreaker.isHostFailure(new SQLException("database does not exist", "3D000")));
+    assertFalse(HostCircuitBreaker.isHostFailure(new SQLException("No suitable driver")));
+  }
+
+  @Test
+  public void testBadPasswordsDoNotOpen() throws SQLException {
+    HostCircuitBreaker breaker = new HostCircuitBreaker("test://localhost:5432", 2, 60000, 30000);
+    for (int i = 0; i < 10; i++) {
+      breaker.beforeConnect();
+      breaker.aborted();
+    }
+    breaker.beforeConnect();
+  }
+
+  @Test
+  public void testUnreachableOpens() throws SQLException {
+    HostCircuitBreaker breaker = new HostCircuitBreaker("test://localhost:5432", 2, 60000, 30000);
+    breaker.beforeConnect();
+    breaker.failure();
+    breaker.beforeConnect();
+    breaker.failure();
+    try {
+      breaker.beforeConnect();
+      fail("Breaker should be open");
+    } catch (SQLException e) {
+      assertTrue(HostCircuitBreaker.isHostFailure(e));
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests the placeholders of the <code>limit.clause</code> property, and the normalization of
+ * key values matching reference counts.
+ */
+public class JdbcConnectorTest {
+
+  @Test
+  public void testNoLimitClause() {
+    assertNull(JdbcConnector.formatLimitClause(null, 10, 20));
+    assertNull(JdbcConnector.formatLimitClause("", 10, 20));
+  }
+
+  @Test
+  public void testOffsetFetch() {
+    assertEquals(
+        "OFFSET 10 ROWS FETCH NEXT 20 ROWS ONLY",
+        JdbcConnector.formatLimitClause("OFFSET %o ROWS FETCH NEXT %n ROWS ONLY", 10, 20)
+    );
+  }
+
+  @Test
+  public void testFirstLast() {
+    assertEquals(
+        "ROWS 1 TO 30",
+        JdbcConnector.formatLimitClause("ROWS %f TO %l", 0, 30)
+    );
+    assertEquals(
+        "ROWS 31 TO 60",
+        JdbcConnector.formatLimitClause("ROWS %f TO %l", 30, 30)
+    );
+  }
+
+  @Test
+  public void testLastDoesNotOverflow() {
+    assertEquals(
+        "ROWS 2147483648 TO 2147483677",
+        JdbcConnector.formatLimitClause("ROWS %f TO %l", Integer.MAX_VALUE, 30)
+    );
+  }
+
+  @Test
+  public void testNormalizeKeyPadding() {
+    assertEquals("abc", JdbcConnector.normalizeKey("abc   "));
+    assertEquals(" abc", JdbcConnector.normalizeKey(" abc"));
+    assertEquals("", JdbcConnector.normalizeKey("  "));
+    assertNull(JdbcConnector.normalizeKey(null));
+  }
+
+  @Test
+  public void testNormalizeKeyScale() {
+    assertEquals("12", JdbcConnector.normalizeKey("12.00"));
+    assertEquals("12", JdbcConnector.normalizeKey("12"));
+    assertEquals("1200", JdbcConnector.normalizeKey("1200"));
+    assertEquals("-0.5", JdbcConnector.normalizeKey("-0.50"));
+    assertEquals("0", JdbcConnector.normalizeKey("0.000"));
+    assertEquals("12a", JdbcConnector.normalizeKey("12a"));
+  }
+}
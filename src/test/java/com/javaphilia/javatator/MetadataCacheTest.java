@@ -0,0 +1,81 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the expiry and invalidation of the entries of a {@link MetadataCache}.
+ */
+public class MetadataCacheTest {
+
+  @Test
+  public void testHit() throws Exception {
+    MetadataCache cache = new MetadataCache(60000);
+    assertEquals("first", cache.get("table", "columns", () -> "first"));
+    assertEquals("first", cache.get("table", "columns", () -> "second"));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testPurgeExpired() throws Exception {
+    MetadataCache cache = new MetadataCache(500);
+    cache.get("first", "columns", () -> "value");
+    cache.get("second", "columns", () -> "value");
+    assertEquals(2, cache.getSize());
+    Thread.sleep(600);
+    cache.get("third", "columns", () -> "value");
+    cache.purgeExpired();
+    // Only the table cached within the time-to-live remains
+    assertEquals(1, cache.getSize());
+    assertEquals("value", cache.get("third", "columns", () -> "reloaded"));
+  }
+
+  @Test
+  public void testExpiredReloaded() throws Exception {
+    MetadataCache cache = new MetadataCache(500);
+    cache.get("table", "columns", () -> "first");
+    Thread.sleep(600);
+    assertEquals("second", cache.get("table", "columns", () -> "second"));
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void testDatabaseInvalidatedWithTable() throws Exception {
+    MetadataCache cache = new MetadataCache(60000);
+    cache.get("table", "columns", () -> "columns");
+    assertEquals("first", cache.getDatabase("allForeignKeys", () -> "first"));
+    assertEquals("first", cache.getDatabase("allForeignKeys", () -> "second"));
+    // Altering any one table may change the foreign keys of the database
+    cache.invalidate("other");
+    assertEquals("second", cache.getDatabase("allForeignKeys", () -> "second"));
+    assertEquals("columns", cache.get("table", "columns", () -> "reloaded"));
+    cache.invalidateAll();
+    assertEquals("third", cache.getDatabase("allForeignKeys", () -> "third"));
+  }
+}
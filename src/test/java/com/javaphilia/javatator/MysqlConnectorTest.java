@@ -0,0 +1,72 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of the values of <code>ENUM</code> and <code>SET</code> columns.
+ */
+public class MysqlConnectorTest {
+
+  @Test
+  public void testParseEnumValues() {
+    assertEquals(
+        Arrays.asList("a", "b", "c"),
+        MysqlConnector.parseEnumValues("'a','b','c'")
+    );
+  }
+
+  @Test
+  public void testParseEnumValuesWithCommas() {
+    assertEquals(
+        Arrays.asList("a", "b,c"),
+        MysqlConnector.parseEnumValues("'a','b,c'")
+    );
+  }
+
+  @Test
+  public void testParseEnumValuesWithDoubledQuotes() {
+    assertEquals(
+        Arrays.asList("d'e", "'", "f''"),
+        MysqlConnector.parseEnumValues("'d''e','''','f'''''")
+    );
+  }
+
+  @Test
+  public void testParseEnumValuesEmpty() {
+    assertEquals(
+        Arrays.asList("", "x"),
+        MysqlConnector.parseEnumValues("'','x'")
+    );
+    assertEquals(
+        Collections.emptyList(),
+        MysqlConnector.parseEnumValues("")
+    );
+  }
+}
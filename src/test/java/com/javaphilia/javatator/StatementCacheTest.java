@@ -0,0 +1,170 @@
+/*
+ * javatator - Multi-database admin tool.
+ *
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package com.javaphilia.javatator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.javaphilia.javatator.DatabasePoolTest.TestDriver;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.Test;
+
+/**
+ * Tests reusing prepared statements through a {@link StatementCache}.
+ */
+public class StatementCacheTest {
+
+  private final AtomicInteger generation = new AtomicInteger();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private Connection connect(int capacity) throws SQLException {
+    // Registers the driver
+    new TestDriver();
+    return StatementCache.wrap(
+        DriverManager.getConnection(DatabasePoolTest.URL_PREFIX + "statements", new Properties()),
+        capacity,
+        generation,
+        hits,
+        misses
+    );
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    try (Connection conn = connect(2)) {
+      int preparedBefore = TestDriver.prepared.get();
+      conn.prepareStatement("SELECT 1").close();
+      PreparedStatement pstmt = conn.prepareStatement("SELECT 1");
+      // In use, so preparing it again creates another statement
+      conn.prepareStatement("SELECT 1").close();
+      pstmt.close();
+      assertTrue(pstmt.isClosed());
+      assertEquals(2, TestDriver.prepared.get() - preparedBefore);
+      assertEquals(1, hits.sum());
+      assertEquals(2, misses.sum());
+    }
+  }
+
+  @Test
+  public void testLeastRecentlyUsed() throws Exception {
+    try (Connection conn = connect(2)) {
+      int closedBefore = TestDriver.closedStatements.get();
+      conn.prepareStatement("SELECT 1").close();
+      conn.prepareStatement("SELECT 2").close();
+      // Makes the first the most recently used
+      conn.prepareStatement("SELECT 1").close();
+      conn.prepareStatement("SELECT 3").close();
+      // The second was evicted and closed
+      assertEquals(1, TestDriver.closedStatements.get() - closedBefore);
+      conn.prepareStatement("SELECT 1").close();
+      conn.prepareStatement("SELECT 3").close();
+      assertEquals(3, hits.sum());
+      conn.prepareStatement("SELECT 2").close();
+      assertEquals(4, misses.sum());
+    }
+  }
+
+  @Test
+  public void testRestoreOnRelease() throws Exception {
+    try (Connection conn = connect(2)) {
+      try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1")) {
+        pstmt.setQueryTimeout(5);
+        pstmt.setMaxRows(10);
+        assertEquals(5, pstmt.getQueryTimeout());
+        assertEquals(10, pstmt.getMaxRows());
+      }
+      try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1")) {
+        assertEquals(1, hits.sum());
+        assertEquals(0, pstmt.getQueryTimeout());
+        assertEquals(0, pstmt.getMaxRows());
+        assertEquals(0, pstmt.getFetchSize());
+      }
+    }
+  }
+
+  @Test
+  public void testCloseWhenModified() throws Exception {
+    try (Connection conn = connect(2)) {
+      int closedBefore = TestDriver.closedStatements.get();
+      try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1")) {
+        pstmt.setEscapeProcessing(false);
+      }
+      assertEquals(1, TestDriver.closedStatements.get() - closedBefore);
+      conn.prepareStatement("SELECT 1").close();
+      assertEquals(0, hits.sum());
+      assertEquals(2, misses.sum());
+    }
+  }
+
+  @Test
+  public void testDiscardOnSchemaChange() throws Exception {
+    try (Connection conn = connect(2)) {
+      int closedBefore = TestDriver.closedStatements.get();
+      conn.prepareStatement("SELECT 1").close();
+      PreparedStatement inUse = conn.prepareStatement("SELECT 2");
+      generation.incrementAndGet();
+      // Prepared before the change, so not returned to the cache
+      inUse.close();
+      assertEquals(1, TestDriver.closedStatements.get() - closedBefore);
+      // The idle statement is closed on the next use of the connection
+      conn.prepareStatement("SELECT 1").close();
+      assertEquals(2, TestDriver.closedStatements.get() - closedBefore);
+      assertEquals(0, hits.sum());
+      conn.prepareStatement("SELECT 1").close();
+      assertEquals(1, hits.sum());
+    }
+  }
+
+  @Test
+  public void testCloseConnection() throws Exception {
+    int closedBefore = TestDriver.closedStatements.get();
+    Connection conn = connect(2);
+    conn.prepareStatement("SELECT 1").close();
+    conn.prepareStatement("SELECT 2").close();
+    assertEquals(0, TestDriver.closedStatements.get() - closedBefore);
+    conn.close();
+    assertTrue(conn.isClosed());
+    assertEquals(2, TestDriver.closedStatements.get() - closedBefore);
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    try (Connection conn = connect(0)) {
+      int closedBefore = TestDriver.closedStatements.get();
+      PreparedStatement pstmt = conn.prepareStatement("SELECT 1");
+      pstmt.close();
+      assertEquals(1, TestDriver.closedStatements.get() - closedBefore);
+      assertEquals(0, hits.sum() + misses.sum());
+    }
+  }
+}